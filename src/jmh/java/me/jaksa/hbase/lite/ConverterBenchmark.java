@@ -0,0 +1,44 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The conversion between the objects and the HBase rows done by {@link GenericConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+    @Param({"NARROW", "MEDIUM", "WIDE"})
+    String width;
+    private Entities.Shape shape;
+
+    private GenericConverter<Object> converter;
+    private Object entity;
+    private Result result;
+
+    @Setup
+    public void setUp() {
+        shape = Entities.Shape.valueOf(width);
+        converter = new GenericConverter<>((Class<Object>) shape.entityClass);
+        entity = Entities.create(shape, 42);
+        result = Entities.toResult(converter.toPut(entity));
+    }
+
+    @Benchmark
+    public Object convert() {
+        return converter.convert(result);
+    }
+
+    @Benchmark
+    public Put toPut() {
+        return converter.toPut(entity);
+    }
+}
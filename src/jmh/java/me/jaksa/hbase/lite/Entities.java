@@ -0,0 +1,162 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+
+import javax.persistence.Id;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic entities of different widths and the rows they are stored in, so the benchmarks need no cluster.
+ */
+class Entities {
+
+    enum Shape {
+        NARROW(Narrow.class), MEDIUM(Medium.class), WIDE(Wide.class);
+
+        final Class<?> entityClass;
+
+        Shape(Class<?> entityClass) {
+            this.entityClass = entityClass;
+        }
+    }
+
+    static Object create(Shape shape, long id) {
+        switch (shape) {
+            case NARROW: return Narrow.create(id);
+            case MEDIUM: return Medium.create(id);
+            default: return Wide.create(id);
+        }
+    }
+
+    /**
+     * @return the result a get of the put would return
+     */
+    static Result toResult(Put put) {
+        List<Cell> cells = new ArrayList<>();
+        for (List<Cell> familyCells : put.getFamilyCellMap().values()) cells.addAll(familyCells);
+        cells.sort(KeyValue.COMPARATOR);
+        return Result.create(cells);
+    }
+
+
+    public static class Narrow implements Serializable {
+        @Id Long id;
+        String f0;
+        Long f1;
+
+        static Narrow create(long id) {
+            Narrow e = new Narrow();
+            e.id = id;
+            e.f0 = "value 0";
+            e.f1 = 1L;
+            return e;
+        }
+    }
+
+
+    public static class Medium implements Serializable {
+        @Id Long id;
+        String f0;
+        Long f1;
+        Double f2;
+        Integer f3;
+        String f4;
+        Long f5;
+        Double f6;
+        Integer f7;
+
+        static Medium create(long id) {
+            Medium e = new Medium();
+            e.id = id;
+            e.f0 = "value 0";
+            e.f1 = 1L;
+            e.f2 = 2.5;
+            e.f3 = 3;
+            e.f4 = "value 4";
+            e.f5 = 5L;
+            e.f6 = 6.5;
+            e.f7 = 7;
+            return e;
+        }
+    }
+
+
+    public static class Wide implements Serializable {
+        @Id Long id;
+        String f0;
+        Long f1;
+        Double f2;
+        Integer f3;
+        String f4;
+        Long f5;
+        Double f6;
+        Integer f7;
+        String f8;
+        Long f9;
+        Double f10;
+        Integer f11;
+        String f12;
+        Long f13;
+        Double f14;
+        Integer f15;
+        String f16;
+        Long f17;
+        Double f18;
+        Integer f19;
+        String f20;
+        Long f21;
+        Double f22;
+        Integer f23;
+        String f24;
+        Long f25;
+        Double f26;
+        Integer f27;
+        String f28;
+        Long f29;
+        Double f30;
+        Integer f31;
+
+        static Wide create(long id) {
+            Wide e = new Wide();
+            e.id = id;
+            e.f0 = "value 0";
+            e.f1 = 1L;
+            e.f2 = 2.5;
+            e.f3 = 3;
+            e.f4 = "value 4";
+            e.f5 = 5L;
+            e.f6 = 6.5;
+            e.f7 = 7;
+            e.f8 = "value 8";
+            e.f9 = 9L;
+            e.f10 = 10.5;
+            e.f11 = 11;
+            e.f12 = "value 12";
+            e.f13 = 13L;
+            e.f14 = 14.5;
+            e.f15 = 15;
+            e.f16 = "value 16";
+            e.f17 = 17L;
+            e.f18 = 18.5;
+            e.f19 = 19;
+            e.f20 = "value 20";
+            e.f21 = 21L;
+            e.f22 = 22.5;
+            e.f23 = 23;
+            e.f24 = "value 24";
+            e.f25 = 25L;
+            e.f26 = 26.5;
+            e.f27 = 27;
+            e.f28 = "value 28";
+            e.f29 = 29L;
+            e.f30 = 30.5;
+            e.f31 = 31;
+            return e;
+        }
+    }
+}
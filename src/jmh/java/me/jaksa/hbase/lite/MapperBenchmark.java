@@ -0,0 +1,67 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Result;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work {@link MapperAdaptor#map} does for every row: the conversion, the user functions and the encoding
+ * of the key and the value for the shuffle. The Hadoop context is left out, it only copies the bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+    @Param({"NARROW", "MEDIUM", "WIDE"})
+    String width;
+    private Entities.Shape shape;
+
+    private GenericConverter<Object> converter;
+    private Result result;
+    private MapperChain identity;
+    private MapperChain partitioned;
+    private ShuffleCodec codec;
+
+    @Setup
+    public void setUp() {
+        shape = Entities.Shape.valueOf(width);
+        converter = new GenericConverter<>((Class<Object>) shape.entityClass);
+        result = Entities.toResult(converter.toPut(Entities.create(shape, 42)));
+        identity = new MapperChain(null);
+
+        List<SerializableFunction> functions = new ArrayList<>();
+        functions.add((PartitionFunction<Object, Integer>) o -> o.hashCode() % 10);
+        partitioned = new MapperChain(functions);
+
+        // the element class is registered as it is in a job
+        Configuration conf = new Configuration(false);
+        conf.set(CompactCodec.CLASSES_KEY, shape.entityClass.getName());
+        codec = new CompactCodec();
+        codec.configure(conf);
+    }
+
+    @Benchmark
+    public void map(Blackhole blackhole) throws IOException {
+        map(identity, blackhole);
+    }
+
+    @Benchmark
+    public void mapWithPartitioner(Blackhole blackhole) throws IOException {
+        map(partitioned, blackhole);
+    }
+
+    private void map(MapperChain chain, Blackhole blackhole) throws IOException {
+        chain.apply(converter.convert(result));
+        blackhole.consume(codec.encode(chain.getKey()));
+        blackhole.consume(codec.encode(chain.getValue()));
+    }
+}
@@ -0,0 +1,54 @@
+package me.jaksa.hbase.lite;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The java serialization used for functions and results, and the encoding of the keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"NARROW", "MEDIUM", "WIDE"})
+    String width;
+    private Entities.Shape shape;
+
+    private Serializable entity;
+    private byte[] bytes;
+    private Long longKey = 1234567890L;
+    private String stringKey = "employee-1234567890";
+
+    @Setup
+    public void setUp() throws IOException {
+        shape = Entities.Shape.valueOf(width);
+        entity = (Serializable) Entities.create(shape, 42);
+        bytes = SerializableUtils.toBytes(entity);
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws IOException {
+        return SerializableUtils.toBytes(entity);
+    }
+
+    @Benchmark
+    public Object fromBytes() throws IOException, ClassNotFoundException {
+        return SerializableUtils.fromBytes(bytes);
+    }
+
+    @Benchmark
+    public byte[] longKeyToBytes() {
+        return Table.toBytes(longKey);
+    }
+
+    @Benchmark
+    public byte[] stringKeyToBytes() {
+        return Table.toBytes(stringKey);
+    }
+}
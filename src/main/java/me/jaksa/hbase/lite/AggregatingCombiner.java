@@ -0,0 +1,39 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Merges the partial results of the mappers running on the same node before they are shuffled.
+ *
+ * @param <A> the type of the partial results
+ */
+class AggregatingCombiner<A extends Serializable> extends Reducer<BytesWritable, BytesWritable, BytesWritable, BytesWritable> {
+    private Aggregator<?, A> aggregator;
+    private ShuffleCodec codec;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        aggregator = TempStorage.loadReducerFunction(context);
+        codec = TempStorage.retrieveCodec(context);
+    }
+
+    @Override
+    protected void reduce(BytesWritable key, Iterable<BytesWritable> values, Context context) throws IOException, InterruptedException {
+        A merged = merge(aggregator, codec, values);
+        context.write(key, new BytesWritable(codec.encode(merged)));
+    }
+
+    static <A extends Serializable> A merge(Aggregator<?, A> aggregator, ShuffleCodec codec,
+                                            Iterable<BytesWritable> partials) throws IOException {
+        A merged = null;
+        for (BytesWritable partial : partials) {
+            A a = (A) codec.decode(partial.getBytes(), partial.getLength());
+            merged = (merged == null) ? a : aggregator.merge(merged, a);
+        }
+        return merged;
+    }
+}
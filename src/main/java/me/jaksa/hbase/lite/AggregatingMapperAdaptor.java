@@ -0,0 +1,43 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+import org.apache.hadoop.io.BytesWritable;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Folds the rows into one partial result per partition inside the mapper. The partials are emitted when the
+ * mapper finishes or when there are too many partitions to keep in memory.
+ *
+ * @param <A> the type of the partial results
+ */
+class AggregatingMapperAdaptor<A extends Serializable> extends TableMapper<BytesWritable, BytesWritable> {
+    public static final String MAX_PARTIALS_KEY = "hbase-lite.aggregate.max-partials";
+    public static final int DEFAULT_MAX_PARTIALS = 10000;
+
+    private Converter converter;
+    private MapperChain chain;
+    private PartialResults<A> partials;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        converter = TempStorage.retrieveConverter(context);
+        chain = new MapperChain(TempStorage.loadMapperFunctions(context));
+        partials = new PartialResults<>(TempStorage.loadReducerFunction(context), TempStorage.retrieveCodec(context),
+                context.getConfiguration().getInt(MAX_PARTIALS_KEY, DEFAULT_MAX_PARTIALS), HotKeys.of(context.getConfiguration()));
+    }
+
+    @Override
+    protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        chain.apply(converter.convert(value));
+        partials.add(chain.getKey(), chain.getValue(), context);
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        partials.flush(context);
+    }
+}
@@ -0,0 +1,63 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.mapreduce.TableReducer;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Merges the partial results produced by the mappers and stores the final result.
+ *
+ * @param <A> the type of the partial and final results
+ */
+class AggregatingReducerAdaptor<A extends Serializable> extends TableReducer<BytesWritable, BytesWritable, Text> {
+    public static final String PARTITIONED_KEY = "hbase-lite.aggregate.partitioned";
+
+    private Aggregator<?, A> aggregator;
+    private ShuffleCodec codec;
+    private boolean partitioned;
+    private boolean datasetOutput;
+    private Converter<A> outputConverter;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        aggregator = TempStorage.loadReducerFunction(context);
+        codec = TempStorage.retrieveCodec(context);
+        partitioned = context.getConfiguration().getBoolean(PARTITIONED_KEY, false);
+        datasetOutput = TempStorage.isDatasetOutput(context);
+        outputConverter = TempStorage.retrieveOutputConverter(context);
+    }
+
+    @Override
+    protected void reduce(BytesWritable key, Iterable<BytesWritable> values, Context context) throws IOException, InterruptedException {
+        A result = AggregatingCombiner.merge(aggregator, codec, values);
+
+        if (outputConverter != null) {
+            writeObject(result, context);
+        } else if (datasetOutput) {
+            TempStorage.storeDatasetResult(context, key, codec.encode(result));
+        } else if (partitioned) {
+            Object partitionKey = codec.decode(key.getBytes(), key.getLength());
+            if (partitionKey instanceof SaltedKey) {
+                SaltedKey salted = (SaltedKey) partitionKey;
+                TempStorage.storePartialResult(context, (Serializable) salted.key, salted.salt, result);
+            } else {
+                TempStorage.storeResult(context, (Serializable) partitionKey, result);
+            }
+        } else {
+            TempStorage.storeResult(context, result);
+        }
+    }
+
+    // like Table.put, the columns of the null fields are cleared
+    private void writeObject(A result, Context context) throws IOException, InterruptedException {
+        Put put = outputConverter.toPut(result);
+        Delete nulls = GenericConverter.nullColumns(outputConverter, result);
+        if (nulls == null || !put.isEmpty()) context.write(null, put);
+        if (nulls != null) context.write(null, nulls);
+    }
+}
@@ -0,0 +1,51 @@
+package me.jaksa.hbase.lite;
+
+import java.io.Serializable;
+
+/**
+ * A reduction that can be computed in pieces and then merged. Unlike a plain reduce function an aggregator
+ * lets every mapper fold its own rows into a partial result, so only one partial per mapper and partition
+ * is sent to the reducers.
+ *
+ * The accumulator returned by {@link #zero()} must be safe to modify, because each partition gets its own.
+ *
+ * @param <T> the type of data being aggregated
+ * @param <A> the type of the partial and final result
+ */
+public interface Aggregator<T, A extends Serializable> extends Serializable {
+    /**
+     * @return a fresh empty accumulator
+     */
+    A zero();
+
+    /**
+     * Folds one element into the accumulator.
+     *
+     * @param accumulator the accumulator so far
+     * @param t the element to add
+     * @return the updated accumulator (can be the same instance)
+     */
+    A accumulate(A accumulator, T t);
+
+    /**
+     * Combines two partial results.
+     *
+     * @param a the first partial result
+     * @param b the second partial result
+     * @return the combined result (can be one of the two instances)
+     */
+    A merge(A a, A b);
+
+    /**
+     * Creates an aggregator out of three functions.
+     *
+     * @param zero the empty accumulator, it will be copied for every partition
+     * @param accumulate folds an element into an accumulator
+     * @param merge combines two partial results
+     */
+    static <T, A extends Serializable> Aggregator<T, A> of(A zero,
+                                                           SerializableBiFunction<A, T, A> accumulate,
+                                                           SerializableBiFunction<A, A, A> merge) {
+        return new FunctionalAggregator<>(zero, accumulate, merge);
+    }
+}
@@ -0,0 +1,204 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.TableName;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An asynchronous view of a {@link Table}. The operations return immediately with a CompletableFuture.
+ * At most maxInFlight requests are sent to HBase at the same time; the others wait in a queue,
+ * so the callers never block. The operations use the cache, the index, the metrics and the view settings
+ * of the table like the synchronous ones, but the writes bypass its write-behind buffer.
+ * This class is thread safe if the converter of the table is.
+ *
+ * @param <T> the type of the domain object
+ */
+public class AsyncTable<T> implements Closeable {
+    private final Table<T> table;
+    private final TableName tableName;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Request> pending = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * Creates an asynchronous table with a dedicated pool of maxInFlight threads.
+     *
+     * @param table the table to access
+     * @param maxInFlight the maximum number of concurrent requests to HBase
+     */
+    public AsyncTable(Table<T> table, int maxInFlight) {
+        this(table, maxInFlight, Executors.newFixedThreadPool(maxInFlight, r -> {
+            Thread thread = new Thread(r, "hbase-lite-async-" + table.getName());
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Creates an asynchronous table that runs the requests on the given executor.
+     *
+     * @param table the table to access
+     * @param maxInFlight the maximum number of concurrent requests to HBase
+     * @param executor the executor running the requests, it is not shut down by {@link #close()}
+     */
+    public AsyncTable(Table<T> table, int maxInFlight, ExecutorService executor) {
+        this(table, maxInFlight, executor, false);
+    }
+
+    private AsyncTable(Table<T> table, int maxInFlight, ExecutorService executor, boolean ownsExecutor) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive");
+        this.table = table;
+        this.tableName = TableName.valueOf(table.getName());
+        this.maxInFlight = maxInFlight;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Retrieve the object with the specified key.
+     *
+     * @param key the key of this object
+     * @return a future that completes with the object or with null if there is no such object
+     */
+    public CompletableFuture<T> getAsync(Object key) {
+        return submit(() -> {
+            try (org.apache.hadoop.hbase.client.Table hTable = HBaseLite.getConnection().getTable(tableName)) {
+                return table.get(key, hTable);
+            }
+        });
+    }
+
+    /**
+     * Store the object into HBase.
+     *
+     * @param t the object to store
+     * @return a future that completes when the object is stored
+     */
+    public CompletableFuture<Void> putAsync(T t) {
+        return submit(() -> {
+            try (org.apache.hadoop.hbase.client.Table hTable = HBaseLite.getConnection().getTable(tableName)) {
+                table.put(t, hTable);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Deletes the object with the specified key.
+     *
+     * @param key the key of the object to delete
+     * @return a future that completes when the object is deleted
+     */
+    public CompletableFuture<Void> deleteAsync(Object key) {
+        return submit(() -> {
+            try (org.apache.hadoop.hbase.client.Table hTable = HBaseLite.getConnection().getTable(tableName)) {
+                table.delete(key, hTable);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return the number of requests currently being executed
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of requests waiting for one of the in-flight requests to complete
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Shuts down the dedicated thread pool. Requests that are already in flight are still executed,
+     * the pending and the new requests fail with a RejectedExecutionException.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        failPending();
+        if (ownsExecutor) executor.shutdown();
+    }
+
+    <R> CompletableFuture<R> submit(Callable<R> request) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new RejectedExecutionException(tableName + " is closed"));
+            return future;
+        }
+        pending.add(new Request(future, () -> {
+            R result = null;
+            Throwable failure = null;
+            try {
+                result = request.call();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            // the slot is released before completing, so the callers never see their own request in flight
+            try {
+                inFlight.decrementAndGet();
+                dispatch();
+            } finally {
+                if (failure == null) future.complete(result);
+                else future.completeExceptionally(failure);
+            }
+        }));
+        dispatch();
+        // close might have drained the queue before the request was added
+        if (closed) failPending();
+        return future;
+    }
+
+    private void dispatch() {
+        while (!pending.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) return;
+            if (!inFlight.compareAndSet(current, current + 1)) continue;
+
+            Request request = pending.poll();
+            if (request == null) {
+                // somebody else took it
+                inFlight.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(request.task);
+            } catch (RejectedExecutionException e) {
+                // the request belongs to whoever submitted it, not necessarily to the current caller
+                inFlight.decrementAndGet();
+                request.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void failPending() {
+        for (Request request = pending.poll(); request != null; request = pending.poll()) {
+            request.future.completeExceptionally(new RejectedExecutionException(tableName + " is closed"));
+        }
+    }
+
+
+    private static class Request {
+        final CompletableFuture<?> future;
+        final Runnable task;
+
+        Request(CompletableFuture<?> future, Runnable task) {
+            this.future = future;
+            this.task = task;
+        }
+    }
+}
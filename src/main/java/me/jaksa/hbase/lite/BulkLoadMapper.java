@@ -0,0 +1,34 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+
+import java.io.IOException;
+
+/**
+ * Converts the mapped objects to the puts of the table being bulk loaded. The puts are sorted and written
+ * to HFiles by the reducers, one reducer per region of the table.
+ */
+class BulkLoadMapper<T, O> extends TableMapper<ImmutableBytesWritable, Put> {
+    private Converter<T> converter;
+    private Converter<O> outputConverter;
+    private MapperChain chain;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        converter = TempStorage.retrieveConverter(context);
+        outputConverter = TempStorage.retrieveOutputConverter(context);
+        chain = new MapperChain(TempStorage.loadMapperFunctions(context));
+    }
+
+    @Override
+    protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        chain.apply(converter.convert(value));
+        Put put = outputConverter.toPut((O) chain.getValue());
+        // an object with only null fields has nothing to write
+        if (put.isEmpty()) return;
+        context.write(new ImmutableBytesWritable(put.getRow()), put);
+    }
+}
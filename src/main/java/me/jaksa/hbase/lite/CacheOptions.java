@@ -0,0 +1,79 @@
+package me.jaksa.hbase.lite;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the client side cache of a table, see {@link Table#enableCache(CacheOptions)}.
+ * At least one of the limits must be set.
+ */
+public class CacheOptions {
+    private long maxEntries;
+    private long maxBytes;
+    private long expireAfterWriteNanos;
+    private boolean cacheMisses;
+
+    /**
+     * @param maxEntries the maximum number of objects in the cache
+     * @return these options
+     */
+    public CacheOptions maxEntries(long maxEntries) {
+        if (maxEntries <= 0) throw new IllegalArgumentException("maxEntries must be positive");
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * The size of an object is estimated as the size of the cells it was read from.
+     *
+     * @param maxBytes the maximum number of bytes in the cache
+     * @return these options
+     */
+    public CacheOptions maxBytes(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be positive");
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * Bounds how long the cache can return an object that was changed by another client.
+     *
+     * @param duration how long an object stays in the cache after it was read
+     * @param unit the unit of the duration
+     * @return these options
+     */
+    public CacheOptions expireAfterWrite(long duration, TimeUnit unit) {
+        if (duration <= 0) throw new IllegalArgumentException("the duration must be positive");
+        this.expireAfterWriteNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Also caches the keys that were not found, so that repeated lookups of missing keys don't go to HBase.
+     *
+     * @return these options
+     */
+    public CacheOptions cacheMisses() {
+        this.cacheMisses = true;
+        return this;
+    }
+
+    long getMaxEntries() {
+        return maxEntries;
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    long getExpireAfterWriteNanos() {
+        return expireAfterWriteNanos;
+    }
+
+    boolean isCachingMisses() {
+        return cacheMisses;
+    }
+
+    void validate() {
+        if (maxEntries == 0 && maxBytes == 0) throw new IllegalArgumentException("the cache needs maxEntries or maxBytes");
+    }
+}
@@ -0,0 +1,65 @@
+package me.jaksa.hbase.lite;
+
+/**
+ * A snapshot of the counters of a table cache, useful for sizing it.
+ *
+ * @see Table#getCacheStats()
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long entries;
+    private final long bytes;
+
+    CacheStats(long hits, long misses, long evictions, long entries, long bytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.entries = entries;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the number of lookups answered by the cache, including the cached misses
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that went to HBase
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of objects removed to respect the limits or because they expired
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return the estimated size of the cached objects
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions +
+                ", entries=" + entries + ", bytes=" + bytes + "}";
+    }
+}
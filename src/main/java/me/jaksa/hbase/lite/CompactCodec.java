@@ -0,0 +1,299 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The default shuffle codec. It writes a one byte tag followed by a type specific encoding for the common
+ * JDK types. Classes registered for the job under {@link #CLASSES_KEY} are written as a numeric class id
+ * followed by their fields. Everything else falls back to Java serialization.
+ *
+ * A class can be registered if it has a no-arg constructor and doesn't customize its serialization.
+ */
+public class CompactCodec implements ShuffleCodec {
+    /** comma separated list of classes that get a class id for the duration of the job */
+    public static final String CLASSES_KEY = "hbase-lite.shuffle.classes";
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte SHORT = 6;
+    private static final byte BYTE = 7;
+    private static final byte TRUE = 8;
+    private static final byte FALSE = 9;
+    private static final byte CHARACTER = 10;
+    private static final byte BIG_DECIMAL = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte BYTES = 13;
+    private static final byte LIST = 14;
+    private static final byte REGISTERED = 15;
+    private static final byte SERIALIZED = 16;
+
+    private final DataOutputBuffer out = new DataOutputBuffer();
+    private final DataInputBuffer in = new DataInputBuffer();
+    private final Map<Class<?>, Integer> classIds = new HashMap<>();
+    private final List<ClassLayout> layouts = new ArrayList<>();
+
+    @Override
+    public void configure(Configuration conf) {
+        for (String className : conf.getTrimmedStrings(CLASSES_KEY)) {
+            try {
+                register(conf.getClassByName(className));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("could not load shuffle class " + className, e);
+            }
+        }
+    }
+
+    /**
+     * Assigns the next class id to the class. Both the mappers and the reducers must register the
+     * same classes in the same order.
+     */
+    void register(Class<?> clazz) {
+        if (classIds.containsKey(clazz)) return;
+        // the id is consumed even when the class can't be encoded field by field to keep the ids aligned
+        ClassLayout layout = ClassLayout.create(clazz);
+        if (layout != null) classIds.put(clazz, layouts.size());
+        layouts.add(layout);
+    }
+
+    @Override
+    public byte[] encode(Object o) throws IOException {
+        out.reset();
+        writeObject(o, out);
+        return Arrays.copyOf(out.getData(), out.getLength());
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int length) throws IOException {
+        in.reset(bytes, length);
+        return readObject(in);
+    }
+
+    private void writeObject(Object o, DataOutput out) throws IOException {
+        if (o == null) {
+            out.writeByte(NULL);
+            return;
+        }
+
+        Class<?> type = o.getClass();
+        if (type == String.class) {
+            out.writeByte(STRING);
+            byte[] bytes = ((String) o).getBytes(StandardCharsets.UTF_8);
+            WritableUtils.writeVInt(out, bytes.length);
+            out.write(bytes);
+        } else if (type == Integer.class) {
+            out.writeByte(INTEGER);
+            WritableUtils.writeVInt(out, (Integer) o);
+        } else if (type == Long.class) {
+            out.writeByte(LONG);
+            WritableUtils.writeVLong(out, (Long) o);
+        } else if (type == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) o);
+        } else if (type == Float.class) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) o);
+        } else if (type == Short.class) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) o);
+        } else if (type == Byte.class) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) o);
+        } else if (type == Boolean.class) {
+            out.writeByte((Boolean) o ? TRUE : FALSE);
+        } else if (type == Character.class) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) o);
+        } else if (type == BigDecimal.class) {
+            out.writeByte(BIG_DECIMAL);
+            BigDecimal decimal = (BigDecimal) o;
+            WritableUtils.writeVInt(out, decimal.scale());
+            writeBytes(decimal.unscaledValue().toByteArray(), out);
+        } else if (type == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(((BigInteger) o).toByteArray(), out);
+        } else if (type == byte[].class) {
+            out.writeByte(BYTES);
+            writeBytes((byte[]) o, out);
+        } else if (type == ArrayList.class) {
+            // partition keys are always ArrayLists
+            out.writeByte(LIST);
+            List list = (List) o;
+            WritableUtils.writeVInt(out, list.size());
+            for (Object element : list) writeObject(element, out);
+        } else if (classIds.containsKey(type)) {
+            int id = classIds.get(type);
+            out.writeByte(REGISTERED);
+            WritableUtils.writeVInt(out, id);
+            writeFields(o, layouts.get(id), out);
+        } else {
+            out.writeByte(SERIALIZED);
+            writeBytes(SerializableUtils.toBytes((Serializable) o), out);
+        }
+    }
+
+    private Object readObject(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL: return null;
+            case STRING: return new String(readBytes(in), StandardCharsets.UTF_8);
+            case INTEGER: return WritableUtils.readVInt(in);
+            case LONG: return WritableUtils.readVLong(in);
+            case DOUBLE: return in.readDouble();
+            case FLOAT: return in.readFloat();
+            case SHORT: return in.readShort();
+            case BYTE: return in.readByte();
+            case TRUE: return Boolean.TRUE;
+            case FALSE: return Boolean.FALSE;
+            case CHARACTER: return in.readChar();
+            case BIG_DECIMAL:
+                int scale = WritableUtils.readVInt(in);
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case BIG_INTEGER: return new BigInteger(readBytes(in));
+            case BYTES: return readBytes(in);
+            case LIST:
+                int size = WritableUtils.readVInt(in);
+                ArrayList list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) list.add(readObject(in));
+                return list;
+            case REGISTERED: return readFields(layouts.get(WritableUtils.readVInt(in)), in);
+            case SERIALIZED:
+                try {
+                    return SerializableUtils.fromBytes(readBytes(in));
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("could not deserialize shuffle data", e);
+                }
+            default: throw new IOException("unknown type tag " + tag);
+        }
+    }
+
+    private void writeFields(Object o, ClassLayout layout, DataOutput out) throws IOException {
+        try {
+            for (Field f : layout.fields) {
+                Class<?> type = f.getType();
+                if (type == int.class) WritableUtils.writeVInt(out, f.getInt(o));
+                else if (type == long.class) WritableUtils.writeVLong(out, f.getLong(o));
+                else if (type == double.class) out.writeDouble(f.getDouble(o));
+                else if (type == float.class) out.writeFloat(f.getFloat(o));
+                else if (type == short.class) out.writeShort(f.getShort(o));
+                else if (type == byte.class) out.writeByte(f.getByte(o));
+                else if (type == boolean.class) out.writeBoolean(f.getBoolean(o));
+                else if (type == char.class) out.writeChar(f.getChar(o));
+                else writeObject(f.get(o), out);
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Object readFields(ClassLayout layout, DataInput in) throws IOException {
+        try {
+            Object o = layout.constructor.newInstance();
+            for (Field f : layout.fields) {
+                Class<?> type = f.getType();
+                if (type == int.class) f.setInt(o, WritableUtils.readVInt(in));
+                else if (type == long.class) f.setLong(o, WritableUtils.readVLong(in));
+                else if (type == double.class) f.setDouble(o, in.readDouble());
+                else if (type == float.class) f.setFloat(o, in.readFloat());
+                else if (type == short.class) f.setShort(o, in.readShort());
+                else if (type == byte.class) f.setByte(o, in.readByte());
+                else if (type == boolean.class) f.setBoolean(o, in.readBoolean());
+                else if (type == char.class) f.setChar(o, in.readChar());
+                else f.set(o, readObject(in));
+            }
+            return o;
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("could not instantiate " + layout.constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[WritableUtils.readVInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * The constructor and the persistent fields of a registered class in a fixed order.
+     */
+    private static class ClassLayout {
+        private static final List<String> CUSTOM_SERIALIZATION_METHODS =
+                Arrays.asList("writeObject", "readObject", "writeReplace", "readResolve");
+
+        final Constructor<?> constructor;
+        final List<Field> fields;
+
+        private ClassLayout(Constructor<?> constructor, List<Field> fields) {
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+
+        /**
+         * @return the layout or null if the class must be serialized the standard way
+         */
+        static ClassLayout create(Class<?> clazz) {
+            if (!Serializable.class.isAssignableFrom(clazz) || Externalizable.class.isAssignableFrom(clazz)) return null;
+            if (clazz.isArray() || clazz.isEnum() || clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) return null;
+
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = clazz; c != Object.class; c = c.getSuperclass()) {
+                if (hasCustomSerialization(c)) return null;
+                List<Field> declared = new ArrayList<>();
+                for (Field f : c.getDeclaredFields()) {
+                    int modifiers = f.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) continue;
+                    f.setAccessible(true);
+                    declared.add(f);
+                }
+                // getDeclaredFields doesn't guarantee an order and both sides must agree on it
+                declared.sort(Comparator.comparing(Field::getName));
+                fields.addAll(0, declared);
+            }
+
+            try {
+                Constructor<?> constructor = clazz.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return new ClassLayout(constructor, fields);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        private static boolean hasCustomSerialization(Class<?> c) {
+            for (Method m : c.getDeclaredMethods()) {
+                if (CUSTOM_SERIALIZATION_METHODS.contains(m.getName())) return true;
+            }
+            return false;
+        }
+    }
+}
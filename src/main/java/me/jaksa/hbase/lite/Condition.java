@@ -0,0 +1,304 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.BinaryPrefixComparator;
+import org.apache.hadoop.hbase.filter.ByteArrayComparable;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.RowFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A condition on the fields or on the key of the objects in a table. Conditions are evaluated by the
+ * region servers, so the rows that don't match are never sent to the mappers or to the client.
+ *
+ * <pre>
+ * employees.where(field("salary").gt(1000).and(field("department").eq("SW")))
+ * </pre>
+ *
+ * Fields are the field names of a JPA annotated class or columns in the "family:column" form.
+ * Range conditions are supported for strings and numbers except BigDecimal.
+ *
+ * @see Table#where(Condition)
+ */
+public abstract class Condition {
+
+    /**
+     * @param name the name of the field or a column in the "family:column" form
+     * @return the field to compare
+     */
+    public static Operand field(String name) {
+        return new Operand(name);
+    }
+
+    /**
+     * @return the key of the objects, it is encoded the same way as in {@link Table#get(Object)}
+     */
+    public static Operand key() {
+        return new Operand(null);
+    }
+
+    /**
+     * @param other the other condition
+     * @return a condition that holds if both conditions hold
+     */
+    public Condition and(Condition other) {
+        return new Combination(FilterList.Operator.MUST_PASS_ALL, this, other);
+    }
+
+    /**
+     * @param other the other condition
+     * @return a condition that holds if at least one of the conditions holds
+     */
+    public Condition or(Condition other) {
+        return new Combination(FilterList.Operator.MUST_PASS_ONE, this, other);
+    }
+
+    Filter toFilter(Table<?> table) {
+        return toFilter(table, new HashSet<>());
+    }
+
+    /**
+     * Compiles the condition to a filter for the given table.
+     *
+     * @param columns collects the columns the filter needs to read
+     */
+    abstract Filter toFilter(Table<?> table, Collection<HColumn> columns);
+
+
+    /**
+     * A field or the key on which a condition can be specified.
+     */
+    public static class Operand {
+        private final String name;
+
+        private Operand(String name) {
+            this.name = name;
+        }
+
+        public Condition eq(Object value) {
+            return new Comparison(name, CompareOp.EQUAL, value);
+        }
+
+        public Condition ne(Object value) {
+            return new Comparison(name, CompareOp.NOT_EQUAL, value);
+        }
+
+        public Condition gt(Object value) {
+            return new Comparison(name, CompareOp.GREATER, value);
+        }
+
+        public Condition ge(Object value) {
+            return new Comparison(name, CompareOp.GREATER_OR_EQUAL, value);
+        }
+
+        public Condition lt(Object value) {
+            return new Comparison(name, CompareOp.LESS, value);
+        }
+
+        public Condition le(Object value) {
+            return new Comparison(name, CompareOp.LESS_OR_EQUAL, value);
+        }
+
+        public Condition startsWith(String prefix) {
+            return new Prefix(name, prefix);
+        }
+    }
+
+
+    private static class Combination extends Condition {
+        private final FilterList.Operator operator;
+        private final Condition left;
+        private final Condition right;
+
+        Combination(FilterList.Operator operator, Condition left, Condition right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Filter toFilter(Table<?> table, Collection<HColumn> columns) {
+            return new FilterList(operator, left.toFilter(table, columns), right.toFilter(table, columns));
+        }
+    }
+
+
+    private static class Prefix extends Condition {
+        private final String name;
+        private final String prefix;
+
+        Prefix(String name, String prefix) {
+            this.name = name;
+            this.prefix = prefix;
+        }
+
+        @Override
+        Filter toFilter(Table<?> table, Collection<HColumn> columns) {
+            Target target = Target.resolve(table, name, prefix);
+            if (target.column != null) columns.add(target.column);
+            if (target.type != String.class) throw new IllegalArgumentException(name + " is not a string");
+            return target.filter(CompareOp.EQUAL, new BinaryPrefixComparator(Bytes.toBytes(prefix)));
+        }
+    }
+
+
+    private static class Comparison extends Condition {
+        private final String name;
+        private final CompareOp op;
+        private final Object value;
+
+        Comparison(String name, CompareOp op, Object value) {
+            if (value == null) throw new IllegalArgumentException("can't compare with null");
+            this.name = name;
+            this.op = op;
+            this.value = value;
+        }
+
+        @Override
+        Filter toFilter(Table<?> table, Collection<HColumn> columns) {
+            Target target = Target.resolve(table, name, value);
+            if (target.column != null) columns.add(target.column);
+            Object converted = coerce(value, target.type);
+            byte[] bytes = target.encode(converted);
+
+            if (op == CompareOp.EQUAL || op == CompareOp.NOT_EQUAL) return target.filter(op, bytes);
+            boolean greater = op == CompareOp.GREATER || op == CompareOp.GREATER_OR_EQUAL;
+            boolean inclusive = op == CompareOp.GREATER_OR_EQUAL || op == CompareOp.LESS_OR_EQUAL;
+
+            if (target.type == String.class) {
+                return greater ? target.range(bytes, inclusive, null, false) : target.range(null, false, bytes, inclusive);
+            }
+            if (target.type == Integer.class || target.type == Long.class || target.type == Short.class) {
+                return integralRange(target, (Number) converted, bytes, greater, inclusive);
+            }
+            if (target.type == Double.class || target.type == Float.class) {
+                return floatingRange(target, bytes, greater, inclusive);
+            }
+            throw new IllegalArgumentException("range conditions are not supported on " + target.type.getSimpleName());
+        }
+
+        /*
+         * HBase compares the bytes as unsigned, so the negative numbers come after the positive ones.
+         * The range is split at the sign bit. Integers keep their order within each half.
+         */
+        private Filter integralRange(Target target, Number number, byte[] bytes, boolean greater, boolean inclusive) {
+            byte[] maxPositive = target.encode(limit(target.type, true));
+            byte[] minNegative = target.encode(limit(target.type, false));
+            boolean negative = number.longValue() < 0;
+
+            if (greater) {
+                if (!negative) return target.range(bytes, inclusive, maxPositive, true);
+                return union(target.range(bytes, inclusive, null, false), target.range(null, false, maxPositive, true));
+            }
+            if (!negative) return union(target.range(null, false, bytes, inclusive), target.range(minNegative, true, null, false));
+            return target.range(minNegative, true, bytes, inclusive);
+        }
+
+        /*
+         * The negative floating point numbers are stored as sign and magnitude,
+         * so the larger the unsigned bytes the smaller the number.
+         */
+        private Filter floatingRange(Target target, byte[] bytes, boolean greater, boolean inclusive) {
+            byte[] positiveInfinity = target.encode(coerce(Double.POSITIVE_INFINITY, target.type));
+            byte[] negativeInfinity = target.encode(coerce(Double.NEGATIVE_INFINITY, target.type));
+            byte[] negativeZero = target.encode(coerce(-0.0, target.type));
+            boolean negative = (bytes[0] & 0x80) != 0;
+
+            if (greater) {
+                if (!negative) return target.range(bytes, inclusive, positiveInfinity, true);
+                return union(target.range(negativeZero, true, bytes, inclusive), target.range(null, false, positiveInfinity, true));
+            }
+            if (!negative) return union(target.range(null, false, bytes, inclusive), target.range(negativeZero, true, negativeInfinity, true));
+            return target.range(bytes, inclusive, negativeInfinity, true);
+        }
+
+        private static Object limit(Class<?> type, boolean max) {
+            if (type == Integer.class) return max ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+            if (type == Short.class) return max ? Short.MAX_VALUE : Short.MIN_VALUE;
+            return max ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+
+        private static Filter union(Filter a, Filter b) {
+            return new FilterList(FilterList.Operator.MUST_PASS_ONE, a, b);
+        }
+
+        private static Object coerce(Object value, Class<?> type) {
+            if (!(value instanceof Number) || type.isInstance(value)) return value;
+            Number number = (Number) value;
+            if (type == Integer.class) return number.intValue();
+            if (type == Long.class) return number.longValue();
+            if (type == Short.class) return number.shortValue();
+            if (type == Double.class) return number.doubleValue();
+            if (type == Float.class) return number.floatValue();
+            return value;
+        }
+    }
+
+
+    /**
+     * The key or the column a condition applies to, and the type of its values.
+     */
+    private static class Target {
+        final HColumn column;
+        final Class<?> type;
+
+        private Target(HColumn column, Class<?> type) {
+            this.column = column;
+            this.type = type;
+        }
+
+        static Target resolve(Table<?> table, String name, Object value) {
+            if (name == null) return new Target(null, value.getClass());
+            if (name.contains(":")) {
+                HColumn column = Table.extractColumns(name).get(0);
+                return new Target(column, value.getClass());
+            }
+
+            Converter<?> converter = table.getConverter();
+            if (!(converter instanceof GenericConverter)) {
+                throw new IllegalArgumentException("the field " + name + " must be specified as family:column");
+            }
+            EntityMetadata.Property property = ((GenericConverter<?>) converter).getMetadata().getProperty(name);
+            return new Target(property.column, property.type);
+        }
+
+        byte[] encode(Object value) {
+            if (column == null) return Table.toBytes(value);
+            try {
+                return SerializableUtils.toBytes(value, type);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("could not encode " + value, e);
+            }
+        }
+
+        Filter filter(CompareOp op, byte[] value) {
+            return filter(op, new BinaryComparator(value));
+        }
+
+        Filter filter(CompareOp op, ByteArrayComparable comparator) {
+            if (column == null) return new RowFilter(op, comparator);
+            SingleColumnValueFilter filter = new SingleColumnValueFilter(column.family, column.name, op, comparator);
+            filter.setFilterIfMissing(true);
+            return filter;
+        }
+
+        /**
+         * @return a filter for the values between the two bounds, a null bound is unlimited
+         */
+        Filter range(byte[] from, boolean fromInclusive, byte[] to, boolean toInclusive) {
+            List<Filter> filters = new ArrayList<>(2);
+            if (from != null) filters.add(filter(fromInclusive ? CompareOp.GREATER_OR_EQUAL : CompareOp.GREATER, from));
+            if (to != null) filters.add(filter(toInclusive ? CompareOp.LESS_OR_EQUAL : CompareOp.LESS, to));
+            return filters.size() == 1 ? filters.get(0) : new FilterList(FilterList.Operator.MUST_PASS_ALL, filters);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+
+/**
+ * Maps the results of a previous stage, read from the sequence files it left in HDFS.
+ * Every result is passed to the mappers as a Map.Entry of the partition key and the reduced value.
+ *
+ * @param <A> the type of the partial results if the stage is an aggregation
+ */
+class DatasetMapper<A extends Serializable> extends Mapper<BytesWritable, BytesWritable, BytesWritable, BytesWritable> {
+    public static final String AGGREGATING_KEY = "hbase-lite.dataset.aggregating";
+
+    private MapperChain chain;
+    private ShuffleCodec codec;
+    private PartialResults<A> partials;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        chain = new MapperChain(TempStorage.loadMapperFunctions(context));
+        codec = TempStorage.retrieveCodec(context);
+        if (context.getConfiguration().getBoolean(AGGREGATING_KEY, false)) {
+            partials = new PartialResults<>(TempStorage.loadReducerFunction(context), codec, context.getConfiguration()
+                    .getInt(AggregatingMapperAdaptor.MAX_PARTIALS_KEY, AggregatingMapperAdaptor.DEFAULT_MAX_PARTIALS),
+                    HotKeys.of(context.getConfiguration()));
+        }
+    }
+
+    @Override
+    protected void map(BytesWritable key, BytesWritable value, Context context) throws IOException, InterruptedException {
+        chain.apply(new AbstractMap.SimpleImmutableEntry<>(ReducerAdaptor.decode(codec, key), ReducerAdaptor.decode(codec, value)));
+
+        if (partials != null) {
+            partials.add(chain.getKey(), chain.getValue(), context);
+        } else {
+            context.write(new BytesWritable(codec.encode(chain.getKey())),
+                    new BytesWritable(codec.encode(chain.getValue())));
+        }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        if (partials != null) partials.flush(context);
+    }
+}
@@ -0,0 +1,37 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableInputFormat;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+
+/**
+ * Deletes the rows it receives and their index rows. The keys of the output are the names of the tables
+ * the deletes are sent to.
+ */
+class DeleteMapper<T> extends TableMapper<ImmutableBytesWritable, Mutation> {
+    private ImmutableBytesWritable table;
+    private ImmutableBytesWritable indexTable;
+    private SecondaryIndex<T> index;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        String tableName = context.getConfiguration().get(TableInputFormat.INPUT_TABLE);
+        table = new ImmutableBytesWritable(Bytes.toBytes(tableName));
+        Converter<T> converter = TempStorage.retrieveConverter(context);
+        index = SecondaryIndex.of(tableName, converter);
+        if (index != null) indexTable = new ImmutableBytesWritable(Bytes.toBytes(index.getTableName()));
+    }
+
+    @Override
+    protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        context.write(table, new Delete(value.getRow()));
+        if (index == null) return;
+        for (Delete delete : index.deletes(value)) context.write(indexTable, delete);
+    }
+}
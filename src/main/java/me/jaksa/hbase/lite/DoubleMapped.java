@@ -0,0 +1,63 @@
+package me.jaksa.hbase.lite;
+
+import java.io.IOException;
+
+/**
+ * Data mapped to primitive doubles. The mappers fold the numbers into statistics as they are produced,
+ * so neither the numbers nor the partial results are boxed.
+ *
+ * @param <T> the type of the data the numbers are extracted from
+ */
+public class DoubleMapped<T> {
+    private final JobBuilder jobBuilder;
+    private final SerializableToDoubleFunction<T> f;
+
+    DoubleMapped(JobBuilder jobBuilder, SerializableToDoubleFunction<T> f) {
+        this.jobBuilder = jobBuilder;
+        this.f = f;
+    }
+
+    /**
+     * @return count, sum, min, max, mean and variance of the numbers
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public DoubleStats stats() throws IOException {
+        jobBuilder.setAggregator(Stats.summarizingDoubles(f));
+        return jobBuilder.reduceToSingleValue();
+    }
+
+    /**
+     * @return the sum or 0 if there are no numbers
+     */
+    public double sum() throws IOException {
+        return stats().getSum();
+    }
+
+    /**
+     * @return the smallest number or positive infinity if there are no numbers
+     */
+    public double min() throws IOException {
+        return stats().getMin();
+    }
+
+    /**
+     * @return the largest number or negative infinity if there are no numbers
+     */
+    public double max() throws IOException {
+        return stats().getMax();
+    }
+
+    /**
+     * @return the mean or NaN if there are no numbers
+     */
+    public double mean() throws IOException {
+        return stats().getMean();
+    }
+
+    /**
+     * @return the population variance or NaN if there are no numbers
+     */
+    public double variance() throws IOException {
+        return stats().getVariance();
+    }
+}
@@ -0,0 +1,54 @@
+package me.jaksa.hbase.lite;
+
+/**
+ * Statistics of a series of doubles.
+ */
+public class DoubleStats extends NumericStats {
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double x) {
+        addMoments(x);
+        sum += x;
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+    }
+
+    /**
+     * Adds the numbers of the other statistics to these.
+     *
+     * @param other the statistics of other numbers
+     * @return these statistics
+     */
+    public DoubleStats merge(DoubleStats other) {
+        mergeMoments(other);
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the smallest number or positive infinity if there are no numbers
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest number or negative infinity if there are no numbers
+     */
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "DoubleStats{count=" + getCount() + ", sum=" + sum + ", min=" + min + ", max=" + max + ", mean=" + getMean() + "}";
+    }
+}
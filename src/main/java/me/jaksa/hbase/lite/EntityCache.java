@@ -0,0 +1,225 @@
+package me.jaksa.hbase.lite;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * The client side cache of a table, keyed by the row key. The entries are split in a probation segment
+ * for the keys seen once and a protected segment for the keys that were hit again. A new entry only
+ * replaces an entry on probation if its key was looked up more often, which keeps one-off scans
+ * of cold keys from flushing the hot ones. The lookup frequencies are kept in a small count-min sketch
+ * that is halved periodically, so old popularity fades away.
+ *
+ * Values loaded before an invalidation are not stored, so a lookup that raced with a write never
+ * caches the old object. This class is thread safe.
+ */
+class EntityCache<T> {
+    // the approximate overhead of an entry on the heap
+    private static final long ENTRY_BYTES = 96;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final long maxEntries;
+    private final long maxBytes;
+    private final long expireAfterWriteNanos;
+    private final boolean cacheMisses;
+    private final LongSupplier clock;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<ByteBuffer, Entry<T>> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<ByteBuffer, Entry<T>> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long protectedBytes;
+    private long invalidations;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    EntityCache(CacheOptions options) {
+        this(options, System::nanoTime);
+    }
+
+    EntityCache(CacheOptions options, LongSupplier clock) {
+        options.validate();
+        this.maxEntries = options.getMaxEntries() > 0 ? options.getMaxEntries() : Long.MAX_VALUE;
+        this.maxBytes = options.getMaxBytes() > 0 ? options.getMaxBytes() : Long.MAX_VALUE;
+        this.expireAfterWriteNanos = options.getExpireAfterWriteNanos();
+        this.cacheMisses = options.isCachingMisses();
+        this.clock = clock;
+        this.sketch = new FrequencySketch(options.getMaxEntries() > 0 ? options.getMaxEntries() : 1 << 16);
+    }
+
+    /**
+     * @return the cached entry, whose value is null for a cached miss, or null if the key is not cached
+     */
+    synchronized Entry<T> get(byte[] key) {
+        ByteBuffer k = ByteBuffer.wrap(key);
+        sketch.increment(k.hashCode());
+
+        Entry<T> entry = probation.get(k);
+        if (entry == null) entry = protectedEntries.get(k);
+        if (entry != null && expireAfterWriteNanos > 0 && clock.getAsLong() - entry.loadedAt > expireAfterWriteNanos) {
+            remove(k);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (!entry.isProtected) promote(k, entry);
+        return entry;
+    }
+
+    /**
+     * @return the stamp to pass to {@link #put(byte[], Object, long, long)} with the value loaded after this call
+     */
+    synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Caches a value loaded from HBase, unless the cache was invalidated since the stamp was taken.
+     *
+     * @param value the object or null if the key was not found
+     * @param size the estimated size of the object
+     */
+    synchronized void put(byte[] key, T value, long size, long stamp) {
+        if (stamp != invalidations) return;
+        if (value == null && !cacheMisses) return;
+        ByteBuffer k = ByteBuffer.wrap(key);
+        remove(k);
+
+        Entry<T> entry = new Entry<>(value, size + key.length + ENTRY_BYTES, clock.getAsLong());
+        probation.put(k, entry);
+        bytes += entry.bytes;
+        evict(k);
+    }
+
+    synchronized void invalidate(byte[] key) {
+        invalidations++;
+        remove(ByteBuffer.wrap(key));
+    }
+
+    synchronized void invalidateAll() {
+        invalidations++;
+        probation.clear();
+        protectedEntries.clear();
+        bytes = 0;
+        protectedBytes = 0;
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, probation.size() + protectedEntries.size(), bytes);
+    }
+
+    private void promote(ByteBuffer key, Entry<T> entry) {
+        probation.remove(key);
+        entry.isProtected = true;
+        protectedEntries.put(key, entry);
+        protectedBytes += entry.bytes;
+
+        // the least recently used protected entries get a second chance on probation
+        Iterator<Map.Entry<ByteBuffer, Entry<T>>> eldest = protectedEntries.entrySet().iterator();
+        while (protectedEntries.size() > 1 && (protectedEntries.size() > maxEntries * PROTECTED_SHARE || protectedBytes > maxBytes * PROTECTED_SHARE)) {
+            Map.Entry<ByteBuffer, Entry<T>> demoted = eldest.next();
+            eldest.remove();
+            demoted.getValue().isProtected = false;
+            protectedBytes -= demoted.getValue().bytes;
+            probation.put(demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private void evict(ByteBuffer candidate) {
+        while (probation.size() + protectedEntries.size() > maxEntries || bytes > maxBytes) {
+            ByteBuffer victim = eldest(probation, candidate);
+            if (victim == null) victim = eldest(protectedEntries, null);
+            if (victim == null) victim = candidate;
+            // the candidate is only admitted if its key is more popular than the victim
+            if (victim != candidate && probation.containsKey(candidate)
+                    && sketch.frequency(candidate.hashCode()) <= sketch.frequency(victim.hashCode())) {
+                victim = candidate;
+            }
+            remove(victim);
+            evictions++;
+        }
+    }
+
+    private static ByteBuffer eldest(LinkedHashMap<ByteBuffer, ?> segment, ByteBuffer except) {
+        for (ByteBuffer key : segment.keySet()) {
+            if (!key.equals(except)) return key;
+        }
+        return null;
+    }
+
+    private void remove(ByteBuffer key) {
+        Entry<T> entry = probation.remove(key);
+        if (entry == null) {
+            entry = protectedEntries.remove(key);
+            if (entry != null) protectedBytes -= entry.bytes;
+        }
+        if (entry != null) bytes -= entry.bytes;
+    }
+
+
+    static class Entry<T> {
+        final T value;
+        final long bytes;
+        final long loadedAt;
+        boolean isProtected;
+
+        Entry(T value, long bytes, long loadedAt) {
+            this.value = value;
+            this.bytes = bytes;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+
+    /**
+     * A count-min sketch with four rows of counters that saturate at 15.
+     */
+    static class FrequencySketch {
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private static final int MAX_COUNT = 15;
+        private final byte[][] counters = new byte[SEEDS.length][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(long expectedEntries) {
+            int width = Integer.highestOneBit((int) Math.min(Math.max(expectedEntries, 64), 1 << 24) - 1) << 1;
+            for (int i = 0; i < SEEDS.length; i++) counters[i] = new byte[width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        void increment(int hash) {
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                if (counters[i][index] < MAX_COUNT) counters[i][index]++;
+            }
+            if (++additions >= sampleSize) reset();
+        }
+
+        int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) frequency = Math.min(frequency, counters[i][index(hash, i)]);
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ (hash >>> 16)) * SEEDS[row];
+            return (h ^ (h >>> 15)) & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) row[i] >>= 1;
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The mapping of an entity class to HBase, computed once per class and JVM. The fields are accessed through
+ * method handles bound to a type specific encoding, so primitive fields are never boxed.
+ *
+ * @param <T> the entity class
+ */
+class EntityMetadata<T> {
+    private static final Map<Class<?>, EntityMetadata<?>> CACHE = new ConcurrentHashMap<>();
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<T> clazz;
+    private final String tableName;
+    private final MethodHandle constructor;
+    private final Property key;
+    private final List<Property> properties;
+    private final Map<String, Property> propertiesByName;
+    private final List<Property> indexedProperties;
+
+    @SuppressWarnings("unchecked")
+    static <T> EntityMetadata<T> of(Class<T> clazz) {
+        return (EntityMetadata<T>) CACHE.computeIfAbsent(clazz, EntityMetadata::new);
+    }
+
+    private EntityMetadata(Class<T> clazz) {
+        this.clazz = clazz;
+        this.tableName = JPAUtils.getTableName(clazz);
+        try {
+            Constructor<T> noArgConstructor = clazz.getDeclaredConstructor();
+            noArgConstructor.setAccessible(true);
+            this.constructor = LOOKUP.unreflectConstructor(noArgConstructor).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(clazz.getName() + " must have a no-arg constructor", e);
+        }
+
+        this.key = new Property(JPAUtils.getKeyField(clazz), null);
+        List<Property> properties = new ArrayList<>();
+        Map<String, Property> propertiesByName = new LinkedHashMap<>();
+        List<Property> indexedProperties = new ArrayList<>();
+        for (Map.Entry<Field, HColumn> entry : JPAUtils.getColumns(clazz).entrySet()) {
+            Property property = new Property(entry.getKey(), entry.getValue());
+            properties.add(property);
+            propertiesByName.put(property.name, property);
+            if (property.indexed) indexedProperties.add(property);
+        }
+        this.properties = Collections.unmodifiableList(properties);
+        this.propertiesByName = Collections.unmodifiableMap(propertiesByName);
+        this.indexedProperties = Collections.unmodifiableList(indexedProperties);
+    }
+
+    Class<T> getElementClass() {
+        return clazz;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    Property getKey() {
+        return key;
+    }
+
+    /**
+     * @return the properties stored in columns, in the order of declaration
+     */
+    List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return the properties annotated with {@link Indexed}
+     */
+    List<Property> getIndexedProperties() {
+        return indexedProperties;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such property
+     */
+    Property getProperty(String name) {
+        Property property = propertiesByName.get(name);
+        if (property == null) throw new IllegalArgumentException("there is no field " + name + " in " + clazz.getName());
+        return property;
+    }
+
+    /**
+     * @return the property stored in the column or null
+     */
+    Property getProperty(HColumn column) {
+        for (Property property : properties) {
+            if (property.column.equals(column)) return property;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    T newInstance() {
+        try {
+            return (T) (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new RuntimeException("could not instantiate " + clazz.getName(), e);
+        }
+    }
+
+
+    /**
+     * A field of the entity and the column where it is stored.
+     */
+    static class Property {
+        final String name;
+        final HColumn column;
+        /** the type of the field, primitive types are replaced by their wrappers */
+        final Class<?> type;
+        final boolean indexed;
+        private final Reader reader;
+        private final Writer writer;
+        /** the getter of the fields that can be null */
+        private final MethodHandle objectGetter;
+
+        Property(Field field, HColumn column) {
+            this.name = field.getName();
+            this.column = column;
+            this.type = ClassUtils.primitiveToWrapper(field.getType());
+            this.indexed = JPAUtils.isIndexed(field);
+            try {
+                field.setAccessible(true);
+                MethodHandle getter = LOOKUP.unreflectGetter(field);
+                MethodHandle setter = LOOKUP.unreflectSetter(field);
+                Class<?> fieldType = field.getType();
+                if (fieldType.isPrimitive()) {
+                    getter = getter.asType(MethodType.methodType(fieldType, Object.class));
+                    setter = setter.asType(MethodType.methodType(void.class, Object.class, fieldType));
+                    this.reader = primitiveReader(fieldType, getter);
+                    this.writer = primitiveWriter(fieldType, setter);
+                    this.objectGetter = null;
+                } else {
+                    getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+                    setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+                    this.reader = objectReader(type, getter);
+                    this.writer = objectWriter(type, setter);
+                    this.objectGetter = getter;
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("could not access " + field, e);
+            }
+        }
+
+        /**
+         * @return the encoded value of the field or null if the field is null
+         */
+        byte[] get(Object entity) {
+            try {
+                return reader.read(entity);
+            } catch (Throwable e) {
+                throw new RuntimeException("could not read " + name, e);
+            }
+        }
+
+        boolean isNullable() {
+            return objectGetter != null;
+        }
+
+        boolean isNull(Object entity) {
+            if (objectGetter == null) return false;
+            try {
+                return (Object) objectGetter.invokeExact(entity) == null;
+            } catch (Throwable e) {
+                throw new RuntimeException("could not read " + name, e);
+            }
+        }
+
+        void set(Object entity, byte[] value) {
+            try {
+                writer.write(entity, value);
+            } catch (Throwable e) {
+                throw new RuntimeException("could not write " + name, e);
+            }
+        }
+
+        private static Reader primitiveReader(Class<?> type, MethodHandle getter) {
+            if (type == int.class) return o -> Bytes.toBytes((int) getter.invokeExact(o));
+            if (type == long.class) return o -> Bytes.toBytes((long) getter.invokeExact(o));
+            if (type == double.class) return o -> Bytes.toBytes((double) getter.invokeExact(o));
+            if (type == float.class) return o -> Bytes.toBytes((float) getter.invokeExact(o));
+            if (type == short.class) return o -> Bytes.toBytes((short) getter.invokeExact(o));
+            if (type == boolean.class) return o -> Bytes.toBytes((boolean) getter.invokeExact(o));
+            if (type == byte.class) return o -> new byte[] {(byte) getter.invokeExact(o)};
+            return o -> Bytes.toBytes((short) (char) getter.invokeExact(o));
+        }
+
+        private static Writer primitiveWriter(Class<?> type, MethodHandle setter) {
+            if (type == int.class) return (o, v) -> { setter.invokeExact(o, Bytes.toInt(v)); };
+            if (type == long.class) return (o, v) -> { setter.invokeExact(o, Bytes.toLong(v)); };
+            if (type == double.class) return (o, v) -> { setter.invokeExact(o, Bytes.toDouble(v)); };
+            if (type == float.class) return (o, v) -> { setter.invokeExact(o, Bytes.toFloat(v)); };
+            if (type == short.class) return (o, v) -> { setter.invokeExact(o, Bytes.toShort(v)); };
+            if (type == boolean.class) return (o, v) -> { setter.invokeExact(o, Bytes.toBoolean(v)); };
+            if (type == byte.class) return (o, v) -> { setter.invokeExact(o, v[0]); };
+            return (o, v) -> { setter.invokeExact(o, (char) Bytes.toShort(v)); };
+        }
+
+        private static Reader objectReader(Class<?> type, MethodHandle getter) {
+            Encoder encoder = encoder(type);
+            return o -> {
+                Object value = getter.invokeExact(o);
+                return value == null ? null : encoder.encode(value);
+            };
+        }
+
+        private static Writer objectWriter(Class<?> type, MethodHandle setter) {
+            Decoder decoder = decoder(type);
+            return (o, v) -> { setter.invokeExact(o, decoder.decode(v)); };
+        }
+
+        // the same encoding as SerializableUtils, chosen once per field instead of once per value
+        private static Encoder encoder(Class<?> type) {
+            if (type == String.class) return v -> Bytes.toBytes((String) v);
+            if (type == BigDecimal.class) return v -> Bytes.toBytes((BigDecimal) v);
+            if (type == Integer.class) return v -> Bytes.toBytes((Integer) v);
+            if (type == Long.class) return v -> Bytes.toBytes((Long) v);
+            if (type == Double.class) return v -> Bytes.toBytes((Double) v);
+            if (type == Float.class) return v -> Bytes.toBytes((Float) v);
+            if (type == Short.class) return v -> Bytes.toBytes((Short) v);
+            if (type == Boolean.class) return v -> Bytes.toBytes((Boolean) v);
+            return v -> SerializableUtils.toBytes((Serializable) v);
+        }
+
+        private static Decoder decoder(Class<?> type) {
+            if (type == String.class) return Bytes::toString;
+            if (type == Integer.class) return Bytes::toInt;
+            if (type == Long.class) return Bytes::toLong;
+            if (type == Double.class) return Bytes::toDouble;
+            if (type == Float.class) return Bytes::toFloat;
+            if (type == Short.class) return Bytes::toShort;
+            if (type == Boolean.class) return Bytes::toBoolean;
+            if (type == BigDecimal.class) return Bytes::toBigDecimal;
+            return SerializableUtils::fromBytes;
+        }
+    }
+
+    private interface Reader {
+        byte[] read(Object entity) throws Throwable;
+    }
+
+    private interface Writer {
+        void write(Object entity, byte[] value) throws Throwable;
+    }
+
+    private interface Encoder {
+        byte[] encode(Object value) throws IOException;
+    }
+
+    private interface Decoder {
+        Object decode(byte[] value) throws Exception;
+    }
+}
@@ -0,0 +1,21 @@
+package me.jaksa.hbase.lite;
+
+/**
+ * Determines where the map and reduce functions are executed.
+ */
+public enum ExecutionMode {
+    /** submit a Hadoop Map/Reduce job */
+    MAPREDUCE,
+
+    /** scan the regions in parallel and run the functions inside this JVM, meant for small tables */
+    LOCAL,
+
+    /**
+     * run locally if the estimated size of the scanned regions, including the data in the memstores,
+     * is below {@link LocalExecutor#MAX_BYTES_KEY}, otherwise submit a Map/Reduce job
+     */
+    AUTO;
+
+    /** the configuration property holding the default execution mode */
+    public static final String EXECUTION_MODE_KEY = "hbase-lite.execution.mode";
+}
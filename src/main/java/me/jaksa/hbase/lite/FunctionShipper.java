@@ -0,0 +1,132 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ships the serialized functions of a job to the tasks. Small functions are embedded in the job configuration,
+ * large ones go through the distributed cache, so the tasks never read them from HBase.
+ * The bytes of the functions are read once per task JVM and cached by their hash, but every task deserializes
+ * its own instance, so the tasks that share a JVM never share the state of a function.
+ */
+class FunctionShipper {
+    /** functions larger than this many bytes are shipped through the distributed cache */
+    public static final String INLINE_LIMIT_KEY = "hbase-lite.functions.inline-limit";
+    public static final int DEFAULT_INLINE_LIMIT = 256 * 1024;
+    /** the directory where the large functions are stored while the job is running */
+    public static final String DIR_KEY = "hbase-lite.functions.dir";
+    public static final String DEFAULT_DIR = "/tmp/hbase-lite/functions";
+    private static final String PREFIX = "hbase-lite.function.";
+    private static final int CACHE_SIZE = 64;
+
+    private static final Map<String, byte[]> CACHE = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+
+    static void store(Job job, String name, Serializable function) throws IOException {
+        Configuration conf = job.getConfiguration();
+        byte[] bytes = SerializableUtils.toBytes(function);
+        String hash = hash(bytes);
+        conf.set(PREFIX + name + ".hash", hash);
+
+        if (bytes.length <= conf.getInt(INLINE_LIMIT_KEY, DEFAULT_INLINE_LIMIT)) {
+            conf.set(PREFIX + name, Base64.getEncoder().encodeToString(bytes));
+            return;
+        }
+
+        Path path = new Path(runDir(conf), hash);
+        FileSystem fs = path.getFileSystem(conf);
+        if (!fs.exists(path)) {
+            try (FSDataOutputStream out = fs.create(path)) {
+                out.write(bytes);
+            }
+        }
+        conf.set(PREFIX + name + ".path", path.toString());
+        job.addCacheFile(URI.create(fs.makeQualified(path).toUri() + "#" + localName(hash)));
+    }
+
+    /**
+     * Call it once per task, every call deserializes a new instance of the function.
+     *
+     * @return the function or null if the job has no function with that name
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T load(Configuration conf, String name) throws IOException {
+        String hash = conf.get(PREFIX + name + ".hash");
+        if (hash == null) return null;
+
+        byte[] bytes = CACHE.get(hash);
+        if (bytes == null) {
+            bytes = read(conf, name, hash);
+            CACHE.put(hash, bytes);
+        }
+        try {
+            return (T) SerializableUtils.fromBytes(bytes);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("could not deserialize " + name, e);
+        }
+    }
+
+    /**
+     * Removes the functions the job stored in the file system.
+     */
+    static void cleanup(Configuration conf) throws IOException {
+        Path dir = runDir(conf);
+        FileSystem fs = dir.getFileSystem(conf);
+        if (fs.exists(dir)) fs.delete(dir, true);
+    }
+
+    private static byte[] read(Configuration conf, String name, String hash) throws IOException {
+        String inline = conf.get(PREFIX + name);
+        if (inline != null) return Base64.getDecoder().decode(inline);
+
+        // the distributed cache links the file into the working directory of the task
+        File local = new File(localName(hash));
+        if (local.exists()) return Files.readAllBytes(local.toPath());
+
+        Path path = new Path(conf.get(PREFIX + name + ".path"));
+        FileSystem fs = path.getFileSystem(conf);
+        byte[] bytes = new byte[(int) fs.getFileStatus(path).getLen()];
+        try (FSDataInputStream in = fs.open(path)) {
+            IOUtils.readFully(in, bytes, 0, bytes.length);
+        }
+        return bytes;
+    }
+
+    private static Path runDir(Configuration conf) {
+        return new Path(conf.get(DIR_KEY, DEFAULT_DIR), conf.get(TempStorage.RUN_KEY));
+    }
+
+    private static String localName(String hash) {
+        return "hbase-lite-" + hash;
+    }
+
+    static String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
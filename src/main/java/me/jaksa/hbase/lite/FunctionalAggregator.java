@@ -0,0 +1,38 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.Serializable;
+
+/**
+ * An aggregator built out of functions.
+ *
+ * @see Aggregator#of(Serializable, SerializableBiFunction, SerializableBiFunction)
+ */
+class FunctionalAggregator<T, A extends Serializable> implements Aggregator<T, A> {
+    private final A zero;
+    private final SerializableBiFunction<A, T, A> accumulate;
+    private final SerializableBiFunction<A, A, A> merge;
+
+    FunctionalAggregator(A zero, SerializableBiFunction<A, T, A> accumulate, SerializableBiFunction<A, A, A> merge) {
+        this.zero = zero;
+        this.accumulate = accumulate;
+        this.merge = merge;
+    }
+
+    @Override
+    public A zero() {
+        // the accumulate function might modify the zero so every partition needs its own copy
+        return (zero instanceof Number || zero instanceof String) ? zero : SerializationUtils.clone(zero);
+    }
+
+    @Override
+    public A accumulate(A accumulator, T t) {
+        return accumulate.apply(accumulator, t);
+    }
+
+    @Override
+    public A merge(A a, A b) {
+        return merge.apply(a, b);
+    }
+}
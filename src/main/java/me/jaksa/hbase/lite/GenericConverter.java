@@ -1,11 +1,14 @@
 package me.jaksa.hbase.lite;
 
+import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 
-import java.io.IOException;
-import java.lang.reflect.Field;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A generic converter that uses JPA annotations to map the given class to HBase columns.
@@ -13,9 +16,11 @@ import java.util.Map;
  * @author Jaksa Vuckovic
  */
 class GenericConverter<T> implements Converter<T> {
-    private Class<T> clazz;
-    private Field keyField;
-    private Map<Field, HColumn> columns;
+    private EntityMetadata<T> metadata;
+    private EntityMetadata.Property[] properties;
+    /** the properties that can be null, the primitive fields never need clearing */
+    private EntityMetadata.Property[] nullableProperties;
+    private Set<String> selectedFields;
 
     public GenericConverter() {}
 
@@ -23,57 +28,95 @@ class GenericConverter<T> implements Converter<T> {
         setElementClass(clazz);
     }
 
+    /**
+     * Creates a converter that reads and writes only some of the fields, the others are left null.
+     */
+    public GenericConverter(Class<T> clazz, Collection<String> selectedFields) {
+        setElementClass(clazz);
+        setSelectedFields(selectedFields);
+    }
+
     // this setter is used when we instantiate the converter on the workers
     void setElementClass(Class<T> clazz) {
-        this.clazz = clazz;
-        keyField = JPAUtils.getKeyField(clazz);
-        keyField.setAccessible(true);
-        this.columns = JPAUtils.getColumns(clazz);
-        for (Field f : columns.keySet()) {
-            f.setAccessible(true);
+        this.metadata = EntityMetadata.of(clazz);
+        List<EntityMetadata.Property> all = metadata.getProperties();
+        setProperties(all.toArray(new EntityMetadata.Property[all.size()]));
+    }
+
+    // this setter is used when we instantiate the converter on the workers
+    void setSelectedFields(Collection<String> fieldNames) {
+        EntityMetadata.Property[] selected = new EntityMetadata.Property[fieldNames.size()];
+        int i = 0;
+        for (String fieldName : fieldNames) selected[i++] = metadata.getProperty(fieldName);
+        setProperties(selected);
+        this.selectedFields = new LinkedHashSet<>(fieldNames);
+    }
+
+    private void setProperties(EntityMetadata.Property[] properties) {
+        List<EntityMetadata.Property> nullable = new ArrayList<>();
+        for (EntityMetadata.Property property : properties) {
+            if (property.isNullable()) nullable.add(property);
         }
+        this.properties = properties;
+        this.nullableProperties = nullable.toArray(new EntityMetadata.Property[nullable.size()]);
     }
 
     public Class<T> getElementClass() {
-        return clazz;
+        return metadata.getElementClass();
+    }
+
+    /**
+     * @return the names of the fields this converter is restricted to or null if it converts all the fields
+     */
+    Set<String> getSelectedFields() {
+        return selectedFields;
+    }
+
+    EntityMetadata<T> getMetadata() {
+        return metadata;
     }
 
     @Override
     public T convert(Result result) {
-        T t;
-        try {
-            t = clazz.newInstance();
-
-            keyField.set(t, SerializableUtils.fromBytes(result.getRow(), keyField.getType()));
-
-            for (Field f : columns.keySet()) {
-                HColumn column = columns.get(f);
-                byte[] byteValue = result.getValue(column.family, column.name);
-                Object value = SerializableUtils.fromBytes(byteValue, f.getType());
-                f.set(t, value);
-            }
-            return t;
-        } catch (IllegalAccessException | InstantiationException | ClassNotFoundException | IOException e) {
-            throw new RuntimeException(e);
+        T t = metadata.newInstance();
+        metadata.getKey().set(t, result.getRow());
+
+        for (EntityMetadata.Property property : properties) {
+            byte[] value = result.getValue(property.column.family, property.column.name);
+            if (value != null) property.set(t, value);
         }
+        return t;
     }
 
     @Override
     public Put toPut(T t) {
-        try {
-            Object keyValue = keyField.get(t);
-            Put put = new Put(SerializableUtils.toBytes(keyValue, keyField.getType()));
-
-            for (Field f : columns.keySet()) {
-                HColumn column = columns.get(f);
-                Object value = f.get(t);
-                byte[] bytesValue = SerializableUtils.toBytes(value, f.getType());
-                put.addColumn(column.family, column.name, bytesValue);
-            }
-
-            return put;
-        } catch (IllegalAccessException | IOException e) {
-            throw new RuntimeException(e);
+        Put put = new Put(metadata.getKey().get(t));
+
+        for (EntityMetadata.Property property : properties) {
+            byte[] value = property.get(t);
+            // the null fields are cleared by nullColumns
+            if (value != null) put.addColumn(property.column.family, property.column.name, value);
         }
+        return put;
+    }
+
+    /**
+     * @return the delete of the columns whose fields are null, or null if no field is null
+     */
+    Delete nullColumns(T t) {
+        Delete delete = null;
+        for (EntityMetadata.Property property : nullableProperties) {
+            if (!property.isNull(t)) continue;
+            if (delete == null) delete = new Delete(metadata.getKey().get(t));
+            delete.addColumns(property.column.family, property.column.name);
+        }
+        return delete;
+    }
+
+    /**
+     * @return the delete that goes with the put of the object, or null if the converter doesn't clear null fields
+     */
+    static <T> Delete nullColumns(Converter<T> converter, T t) {
+        return (converter instanceof GenericConverter) ? ((GenericConverter<T>) converter).nullColumns(t) : null;
     }
 }
@@ -4,7 +4,6 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.TableMapper;
 import org.apache.hadoop.io.BytesWritable;
-import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import java.io.IOException;
@@ -18,14 +17,16 @@ import java.io.Serializable;
 class Grouper<T extends Serializable> extends TableMapper<BytesWritable, BytesWritable> {
     private final BytesWritable ONE_KEY = new BytesWritable(new byte[] {42});
     private Converter<T> converter;
+    private ShuffleCodec codec;
 
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
-        converter = TempStorage.getInstance().retrieveConverter(context);
+        converter = TempStorage.retrieveConverter(context);
+        codec = TempStorage.retrieveCodec(context);
     }
 
     protected void map(ImmutableBytesWritable key, Result value, Mapper.Context context) throws IOException, InterruptedException {
         T t = converter.convert(value);
-        context.write(ONE_KEY, new BytesWritable(SerializableUtils.toBytes(t)));
+        context.write(ONE_KEY, new BytesWritable(codec.encode(t)));
     }
-}
\ No newline at end of file
+}
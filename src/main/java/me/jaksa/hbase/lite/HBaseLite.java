@@ -2,6 +2,13 @@ package me.jaksa.hbase.lite;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Responsible for JVM wide setting such as the HBase configuration.
@@ -11,7 +18,16 @@ import org.apache.hadoop.hbase.HBaseConfiguration;
  * @author Jaksa Vuckovic
  */
 public class HBaseLite {
+    /** the number of pipelines submitted asynchronously that run at the same time, read when the first one is submitted */
+    public static final String MAX_CONCURRENT_JOBS_KEY = "hbase-lite.jobs.max-concurrent";
+    public static final int DEFAULT_MAX_CONCURRENT_JOBS = 4;
+    /** print the progress of the map reduce jobs to stdout */
+    public static final String VERBOSE_JOBS_KEY = "hbase-lite.jobs.verbose";
+
     private static Configuration configuration;
+    private static Connection connection;
+    private static ExecutorService executor;
+    private static ExecutorService jobExecutor;
 
     public static synchronized Configuration getConfiguration() {
         if (configuration == null) {
@@ -23,5 +39,101 @@ public class HBaseLite {
 
     public static synchronized void setConfiguration(Configuration configuration) {
         HBaseLite.configuration = configuration;
+        closeConnection();
+    }
+
+    /**
+     * @return the connection shared by all the tables, it is created on first use
+     * @throws IOException if the connection can't be established
+     */
+    static synchronized Connection getConnection() throws IOException {
+        if (connection == null || connection.isClosed()) {
+            connection = ConnectionFactory.createConnection(getConfiguration());
+        }
+        return connection;
+    }
+
+    /**
+     * @return the thread pool used by the tables to issue requests to several regions in parallel
+     */
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "hbase-lite-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Removes the temporary data of the jobs older than maxAge, e.g. left behind by clients that died
+     * before retrieving the results. The data is removed anyway when it expires.
+     *
+     * @return the number of removed rows
+     */
+    public static long purgeTemporaryData(long maxAge, TimeUnit unit) throws IOException {
+        return TempStorage.getInstance().purge(System.currentTimeMillis() - unit.toMillis(maxAge));
+    }
+
+    /**
+     * @return the thread pool running the pipelines submitted asynchronously, every pipeline takes a thread
+     */
+    static synchronized ExecutorService getJobExecutor() {
+        if (jobExecutor == null) {
+            int maxJobs = getConfiguration().getInt(MAX_CONCURRENT_JOBS_KEY, DEFAULT_MAX_CONCURRENT_JOBS);
+            jobExecutor = Executors.newFixedThreadPool(maxJobs, r -> {
+                Thread thread = new Thread(r, "hbase-lite-job");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return jobExecutor;
+    }
+
+    /**
+     * Starts measuring the latency and the bytes of the operations of all the tables. The metrics are exposed
+     * through JMX, {@link #getMetrics(String, Operation)} and the listeners. They are disabled by default.
+     */
+    public static void enableMetrics() {
+        Metrics.setEnabled(true);
+    }
+
+    public static void disableMetrics() {
+        Metrics.setEnabled(false);
+    }
+
+    /**
+     * @param table the name of the table or null for the operations that are not tied to a table
+     * @return the metrics recorded so far for the operation
+     */
+    public static OperationMetrics getMetrics(String table, Operation operation) {
+        return Metrics.get(table, operation);
+    }
+
+    /**
+     * Forgets all the recorded metrics.
+     */
+    public static void resetMetrics() {
+        Metrics.reset();
+    }
+
+    public static void addMetricsListener(MetricsListener listener) {
+        Metrics.addListener(listener);
+    }
+
+    public static void removeMetricsListener(MetricsListener listener) {
+        Metrics.removeListener(listener);
+    }
+
+    private static void closeConnection() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // we are discarding this connection anyway
+        }
+        connection = null;
     }
 }
@@ -0,0 +1,61 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Detects the hot partition keys of a mapper from the first keys it produces and salts them,
+ * so their values are spread over several reducers. This class is not thread safe.
+ */
+class HotKeys {
+    private final int buckets;
+    private final int sampleSize;
+    private final int hotCount;
+    private Map<Object, Integer> sample = new HashMap<>();
+    private int sampled;
+    private Set<Object> hot;
+    private int nextSalt;
+
+    HotKeys(int buckets, int sampleSize, float hotKeyFraction) {
+        this.buckets = buckets;
+        this.sampleSize = sampleSize;
+        this.hotCount = Math.max(1, (int) Math.ceil(sampleSize * hotKeyFraction));
+    }
+
+    /**
+     * @return the hot keys of the job or null if the job doesn't salt them
+     */
+    static HotKeys of(Configuration conf) {
+        int buckets = conf.getInt(PartitionOptions.SALT_BUCKETS_KEY, 0);
+        if (buckets <= 1) return null;
+        return new HotKeys(buckets,
+                conf.getInt(PartitionOptions.SAMPLE_SIZE_KEY, PartitionOptions.DEFAULT_SAMPLE_SIZE),
+                conf.getFloat(PartitionOptions.HOT_KEY_FRACTION_KEY, PartitionOptions.DEFAULT_HOT_KEY_FRACTION));
+    }
+
+    /**
+     * @return the key or, if the key is hot, the key with the next salt
+     */
+    Object salt(Object key) {
+        if (hot == null) {
+            sample.merge(key, 1, Integer::sum);
+            if (++sampled == sampleSize) endSampling();
+            return key;
+        }
+        if (!hot.contains(key)) return key;
+        nextSalt = (nextSalt + 1) % buckets;
+        return new SaltedKey(key, nextSalt);
+    }
+
+    private void endSampling() {
+        hot = new HashSet<>();
+        for (Map.Entry<Object, Integer> entry : sample.entrySet()) {
+            if (entry.getValue() >= hotCount) hot.add(entry.getKey());
+        }
+        sample = null;
+    }
+}
@@ -0,0 +1,29 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableInputFormat;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+
+import java.io.IOException;
+
+/**
+ * Writes the index rows of every row of the table, the job that rebuilds an index has no reducers.
+ */
+class IndexMapper<T> extends TableMapper<ImmutableBytesWritable, Put> {
+    private SecondaryIndex<T> index;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        Converter<T> converter = TempStorage.retrieveConverter(context);
+        index = SecondaryIndex.of(context.getConfiguration().get(TableInputFormat.INPUT_TABLE), converter);
+    }
+
+    @Override
+    protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        for (Put put : index.puts(value)) {
+            context.write(new ImmutableBytesWritable(put.getRow()), put);
+        }
+    }
+}
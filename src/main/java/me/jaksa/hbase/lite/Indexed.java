@@ -0,0 +1,15 @@
+package me.jaksa.hbase.lite;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of an entity that can be searched with {@link Table#findBy(String, Object)}.
+ * The index is kept in a companion table named after the table of the entity with an "-idx" suffix.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Indexed {
+}
@@ -1,8 +1,12 @@
 package me.jaksa.hbase.lite;
 
 import javax.persistence.*;
+import java.beans.Introspector;
+import java.lang.invoke.SerializedLambda;
 import java.lang.reflect.Field;
-import java.util.HashMap;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -22,9 +26,11 @@ public class JPAUtils {
     }
 
     public static Map<Field, HColumn> getColumns(Class clazz) {
-        Map<Field, HColumn> fields = new HashMap<>();
+        // the fields keep the order of declaration, so the columns are always processed in the same order
+        Map<Field, HColumn> fields = new LinkedHashMap<>();
         for (Field f : clazz.getDeclaredFields()) {
-            if (!isIdentifier(f)) {
+            if (!isIdentifier(f) && !Modifier.isStatic(f.getModifiers()) && !Modifier.isTransient(f.getModifiers()) && !f.isSynthetic()
+                    && f.getAnnotation(Transient.class) == null) {
                 fields.put(f, new HColumn(getColumnFamily(f), getColumnName(f)));
             }
         }
@@ -39,6 +45,34 @@ public class JPAUtils {
                 "Please annotate a field with javax.persistence.Id.");
     }
 
+    /**
+     * Finds the field read by a getter, following the JavaBeans naming (getSalary reads salary).
+     *
+     * @param getter a serializable method reference like Employee::getSalary
+     * @return the name of the field
+     */
+    static String getFieldName(SerializableFunction<?, ?> getter) {
+        String methodName;
+        try {
+            Method writeReplace = getter.getClass().getDeclaredMethod("writeReplace");
+            writeReplace.setAccessible(true);
+            methodName = ((SerializedLambda) writeReplace.invoke(getter)).getImplMethodName();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("the getter must be a method reference", e);
+        }
+
+        if (methodName.startsWith("get") && methodName.length() > 3) return Introspector.decapitalize(methodName.substring(3));
+        if (methodName.startsWith("is") && methodName.length() > 2) return Introspector.decapitalize(methodName.substring(2));
+        throw new IllegalArgumentException(methodName + " is not a getter");
+    }
+
+    /**
+     * @return true if the field is annotated with {@link Indexed}
+     */
+    static boolean isIndexed(Field f) {
+        return f.getAnnotation(Indexed.class) != null;
+    }
+
     private static boolean isIdentifier(Field f) {
         return f.getAnnotation(Id.class) != null;
     }
@@ -0,0 +1,32 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * Encodes the shuffle data using standard Java serialization. It works for any serializable
+ * object, but it is slow and writes a full class description for every object.
+ */
+public class JavaSerializationCodec implements ShuffleCodec {
+    @Override
+    public void configure(Configuration conf) {
+    }
+
+    @Override
+    public byte[] encode(Object o) throws IOException {
+        return SerializableUtils.toBytes((Serializable) o);
+    }
+
+    @Override
+    public Object decode(byte[] bytes, int length) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes, 0, length))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("could not deserialize shuffle data", e);
+        }
+    }
+}
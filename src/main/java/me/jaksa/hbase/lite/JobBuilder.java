@@ -1,22 +1,44 @@
 package me.jaksa.hbase.lite;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat2;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.mapreduce.MultiTableOutputFormat;
 import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+import org.apache.hadoop.hbase.mapreduce.TableReducer;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.function.Function;
 
 /**
+ * Plans and runs the jobs of a pipeline. A pipeline reads a table, or the results of a previous pipeline when
+ * it is a later stage of a multi-stage computation. The results of the earlier stages stay in HDFS as
+ * compressed sequence files of shuffle encoded partition keys and values, and are removed once the next
+ * stage is done with them.
+ *
  * @author Jaksa Vuckovic
  */
 class JobBuilder {
@@ -25,9 +47,17 @@ class JobBuilder {
     private final Configuration configuration;
     private final Converter converter;
     private final Scan scan;
-    private Job job;
+    private final JobBuilder upstream;
+    private boolean feedsDataset;
+    private Path datasetDir;
+    private Table<?> outputTable;
+    private PartitionOptions partitionOptions;
+    private volatile Job job;
+    private volatile boolean cancelled;
     private List<SerializableFunction> mappers;
     private Function reducer;
+    private Aggregator aggregator;
+    private ExecutionMode executionMode;
 
     public JobBuilder(HTable sourceTable, TempStorage tempStorage,
                       Configuration configuration, Converter converter, Scan scan) {
@@ -36,8 +66,24 @@ class JobBuilder {
         this.configuration = configuration;
         this.converter = converter;
         this.scan = scan;
+        this.upstream = null;
     };
 
+    /**
+     * Creates the next stage of the pipeline, it processes the results of the upstream stage.
+     * The upstream stage runs when this stage runs.
+     */
+    public JobBuilder(JobBuilder upstream) {
+        this.sourceTable = upstream.sourceTable;
+        this.tempStorage = upstream.tempStorage;
+        this.configuration = upstream.configuration;
+        this.converter = null;
+        this.scan = null;
+        this.upstream = upstream;
+        this.executionMode = upstream.executionMode;
+        upstream.feedsDataset = true;
+    }
+
     public void addMapper(SerializableFunction mapper) {
         if (mappers == null) mappers = new ArrayList<>();
         mappers.add(mapper);
@@ -48,40 +94,154 @@ class JobBuilder {
         mappers.add(partitioner);
     }
 
+    /**
+     * @param options the options of the shuffle, they replace the options given with the previous partitioners
+     */
+    public void addPartitioner(PartitionFunction partitioner, PartitionOptions options) {
+        addPartitioner(partitioner);
+        this.partitionOptions = options;
+    }
+
     public void setReducer(Function reducer) {
         this.reducer = reducer;
     }
 
+    public void setAggregator(Aggregator aggregator) {
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * @param outputTable the table the reducers write the results into
+     */
+    public void setOutputTable(Table<?> outputTable) {
+        this.outputTable = outputTable;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
     public Job createJob() throws IOException {
         job = Job.getInstance(configuration);
+        tempStorage.startRun(job);
 
         job.setJarByClass(getClassForJar());
 
         TableMapReduceUtil.addDependencyJars(job);
 
-        tempStorage.storeConverter(job, converter);
-        if (converter instanceof GenericConverter) tempStorage.storeElementClass(job, (GenericConverter) converter);
+        if (upstream != null) {
+            // the classes keep the ids they had when the input was encoded
+            String upstreamClasses = upstream.job.getConfiguration().get(CompactCodec.CLASSES_KEY);
+            if (upstreamClasses != null) job.getConfiguration().set(CompactCodec.CLASSES_KEY, upstreamClasses);
+        } else {
+            tempStorage.storeConverter(job, converter);
+        }
+        List<Class<?>> shuffledClasses = new ArrayList<>();
+        if (converter instanceof GenericConverter) {
+            tempStorage.storeElementClass(job, (GenericConverter) converter);
+            shuffledClasses.add(((GenericConverter) converter).getElementClass());
+        }
+        if (aggregator != null) {
+            // the partial results are shuffled, the JDK types are encoded by the codec anyway
+            Class<?> partialClass = aggregator.zero().getClass();
+            if (!partialClass.getName().startsWith("java.")) shuffledClasses.add(partialClass);
+        }
+        if (isSalted()) shuffledClasses.add(SaltedKey.class);
+        tempStorage.storeCodec(job, shuffledClasses.toArray(new Class<?>[shuffledClasses.size()]));
+
+        if (aggregator != null) {
+            initAggregatingJob();
+            applyPartitionOptions();
+            return job;
+        }
+
         tempStorage.storeReducerFunction(job, (Serializable) reducer);
 
         if (mappers == null) {
-            TableMapReduceUtil.initTableMapperJob(sourceTable.getName().getName(),
-                    scan, Grouper.class, BytesWritable.class, BytesWritable.class, job);
+            initMapper(Grouper.class);
         } else {
             tempStorage.storeMapperFunctions(job, mappers);
-            TableMapReduceUtil.initTableMapperJob(sourceTable.getName().getName(),
-                    scan, MapperAdaptor.class, BytesWritable.class, BytesWritable.class, job);
+            initMapper(MapperAdaptor.class);
         }
 
         if (!hasPartitioners()) {
-            TableMapReduceUtil.initTableReducerJob(TempStorage.TABLE_NAME, ReducerAdaptor.class, job);
+            initReducer(ReducerAdaptor.class);
             job.setNumReduceTasks(1); // only 1 reducer for non partitioned data
         } else {
-            TableMapReduceUtil.initTableReducerJob(TempStorage.TABLE_NAME, PartitionedReducerAdaptor.class, job);
+            initReducer(PartitionedReducerAdaptor.class);
         }
+        applyPartitionOptions();
 
         return job;
     }
 
+    private void initAggregatingJob() throws IOException {
+        // the mappers fold the rows into partial results and the combiners merge
+        // them, so the reducers only receive a few partials per partition
+        tempStorage.storeReducerFunction(job, aggregator);
+        if (mappers != null) tempStorage.storeMapperFunctions(job, mappers);
+
+        initMapper(AggregatingMapperAdaptor.class);
+        job.setCombinerClass(AggregatingCombiner.class);
+        initReducer(AggregatingReducerAdaptor.class);
+
+        job.getConfiguration().setBoolean(AggregatingReducerAdaptor.PARTITIONED_KEY, hasPartitioners());
+        if (!hasPartitioners()) job.setNumReduceTasks(1);
+    }
+
+    private void applyPartitionOptions() throws IOException {
+        if (partitionOptions == null || !hasPartitioners()) return;
+        if (partitionOptions.isSalted() && aggregator == null) {
+            throw new IllegalArgumentException("only aggregations can salt the hot keys, the results of a reducer can't be merged");
+        }
+        partitionOptions.applyTo(job, isSalted());
+    }
+
+    // the salted partials are merged when the client retrieves them
+    private boolean isSalted() {
+        return partitionOptions != null && partitionOptions.isSalted() && aggregator != null && hasPartitioners()
+                && outputTable == null && !feedsDataset;
+    }
+
+    /**
+     * @param tableMapper the mapper used when the stage reads the source table
+     */
+    private void initMapper(Class<? extends TableMapper> tableMapper) throws IOException {
+        if (upstream == null) {
+            TableMapReduceUtil.initTableMapperJob(sourceTable.getName().getName(),
+                    scan, tableMapper, BytesWritable.class, BytesWritable.class, job);
+            return;
+        }
+        job.setInputFormatClass(SequenceFileInputFormat.class);
+        FileInputFormat.addInputPath(job, upstream.datasetDir);
+        job.setMapperClass(DatasetMapper.class);
+        job.setMapOutputKeyClass(BytesWritable.class);
+        job.setMapOutputValueClass(BytesWritable.class);
+        job.getConfiguration().setBoolean(DatasetMapper.AGGREGATING_KEY, aggregator != null);
+    }
+
+    private void initReducer(Class<? extends TableReducer> reducer) throws IOException {
+        if (outputTable != null) {
+            TableMapReduceUtil.initTableReducerJob(outputTable.getName(), reducer, job);
+            tempStorage.storeOutputConverter(job, outputTable.getConverter());
+            return;
+        }
+        if (!feedsDataset) {
+            TableMapReduceUtil.initTableReducerJob(TempStorage.TABLE_NAME, reducer, job);
+            return;
+        }
+        Configuration conf = job.getConfiguration();
+        datasetDir = new Path(conf.get(TempStorage.DATASETS_DIR_KEY, TempStorage.DEFAULT_DATASETS_DIR), conf.get(TempStorage.RUN_KEY));
+        conf.setBoolean(TempStorage.DATASET_OUTPUT_KEY, true);
+        job.setReducerClass(reducer);
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        job.setOutputKeyClass(BytesWritable.class);
+        job.setOutputValueClass(BytesWritable.class);
+        SequenceFileOutputFormat.setOutputPath(job, datasetDir);
+        SequenceFileOutputFormat.setCompressOutput(job, true);
+        SequenceFileOutputFormat.setOutputCompressionType(job, SequenceFile.CompressionType.BLOCK);
+    }
+
     private boolean hasPartitioners() {
         if (mappers == null) return false;
         for (SerializableFunction mapper : mappers) {
@@ -91,38 +251,283 @@ class JobBuilder {
     }
 
     public <R> R reduceToSingleValue() throws IOException {
+        if (runsLocally()) {
+            LocalExecutor localExecutor = localExecutor();
+            return (aggregator != null)
+                    ? (R) localExecutor.aggregateToSingleValue(aggregator)
+                    : localExecutor.reduceToSingleValue(reducer);
+        }
+
         try {
-            if (job == null) job = createJob();
-            boolean success = job.waitForCompletion(true);
-            if (!success) throw new IOException("Failed processing " + job.getStatus().getFailureInfo());
+            runJob();
 
             // if there are no rows in the table no result will be stored
+            long start = Metrics.start();
             R result = tempStorage.retrieveResult(job);
+            Metrics.record(tableName(), Operation.JOB_RESULTS, start, 0);
 
-            return (result != null) ? result : (R) reducer.apply(Collections.emptyList());
-        } catch (ClassNotFoundException | InterruptedException e) {
+            if (result != null) return result;
+            return (aggregator != null) ? (R) aggregator.zero() : (R) reducer.apply(Collections.emptyList());
+        } catch (ClassNotFoundException e) {
             throw new IOException(e);
         }
     }
 
     public <K, R extends Serializable> Map<K, R> reduceToMultipleValues() throws IOException {
+        if (runsLocally()) return reduceLocallyToMultipleValues();
+
+        runJob();
+        long start = Metrics.start();
+        Map<K, R> results = tempStorage.retrieveResults(job, aggregator);
+        Metrics.record(tableName(), Operation.JOB_RESULTS, start, 0);
+        return results;
+    }
+
+    /**
+     * Like {@link #reduceToMultipleValues()} but the results are fetched lazily.
+     */
+    public <K, R extends Serializable> CloseableIterator<Map.Entry<K, R>> reduceToIterator() throws IOException {
+        if (runsLocally()) {
+            Map<K, R> results = reduceLocallyToMultipleValues();
+            return CloseableIterator.of(results.entrySet().iterator());
+        }
+
+        runJob();
+        return tempStorage.iterateResults(job, aggregator);
+    }
+
+    /**
+     * Runs the pipeline on the job executor of {@link HBaseLite}.
+     *
+     * @param pipeline one of the reduce methods of this builder
+     */
+    public <R> JobHandle<R> submit(Callable<R> pipeline) {
+        JobHandle<R> handle = new JobHandle<>(this);
+        handle.setTask(HBaseLite.getJobExecutor().submit(() -> {
+            if (handle.isDone()) return; // cancelled while waiting
+            try {
+                handle.complete(pipeline.call());
+            } catch (Throwable e) {
+                handle.fail(e);
+            }
+        }));
+        return handle;
+    }
+
+    /**
+     * @return the average progress of the map and reduce phases of all the stages
+     */
+    float getProgress() {
+        int stages = 0;
+        float progress = 0;
+        for (JobBuilder stage = this; stage != null; stage = stage.upstream) {
+            stages++;
+            Job stageJob = stage.job;
+            if (stageJob == null) continue;
+            try {
+                progress += (stageJob.mapProgress() + stageJob.reduceProgress()) / 2;
+            } catch (IllegalStateException | IOException e) {
+                // the job hasn't been submitted yet
+            }
+        }
+        return progress / stages;
+    }
+
+    /**
+     * Kills the jobs of all the stages that are running, the stages that haven't submitted their job yet
+     * kill it as soon as it is submitted or don't submit it at all.
+     */
+    void kill() {
+        for (JobBuilder stage = this; stage != null; stage = stage.upstream) {
+            stage.cancelled = true;
+            Job stageJob = stage.job;
+            if (stageJob == null) continue;
+            try {
+                if (!stageJob.isComplete()) stageJob.killJob();
+            } catch (IllegalStateException | IOException e) {
+                // the job hasn't been submitted yet, interrupting the pipeline is enough
+            }
+        }
+    }
+
+    /**
+     * Writes the mapped objects into HFiles split by the regions of the table and moves them into the table,
+     * which skips the write ahead log and the memstores. Every region loads its files atomically.
+     * When running locally the objects are put into the table while they are scanned, together with their index rows.
+     *
+     * @return true if the objects were loaded as HFiles, which don't write the index of the table
+     */
+    public boolean bulkLoadInto(Table<?> table) throws IOException {
+        if (upstream != null) throw new IllegalArgumentException("only a pipeline that reads a table can be bulk loaded");
+        if (runsLocally()) {
+            localExecutor().putInto(table);
+            return false;
+        }
+
+        job = Job.getInstance(configuration);
+        tempStorage.startRun(job);
+        job.setJarByClass(getClassForJar());
+        TableMapReduceUtil.addDependencyJars(job);
+        tempStorage.storeConverter(job, converter);
+        if (converter instanceof GenericConverter) tempStorage.storeElementClass(job, (GenericConverter) converter);
+        tempStorage.storeOutputConverter(job, table.getConverter());
+        if (mappers != null) tempStorage.storeMapperFunctions(job, mappers);
+
+        TableMapReduceUtil.initTableMapperJob(sourceTable.getName().getName(), scan, BulkLoadMapper.class,
+                ImmutableBytesWritable.class, Put.class, job);
+        HTable target = table.getHTable();
+        // one reducer per region, the partitioner splits the puts at the current region boundaries
+        HFileOutputFormat2.configureIncrementalLoad(job, target);
+        Configuration conf = job.getConfiguration();
+        Path dir = new Path(conf.get(TempStorage.BULK_LOAD_DIR_KEY, TempStorage.DEFAULT_BULK_LOAD_DIR), conf.get(TempStorage.RUN_KEY));
+        FileOutputFormat.setOutputPath(job, dir);
+
         try {
-            if (job == null) job = createJob();
-            boolean success = job.waitForCompletion(true);
-            if (!success) throw new IOException("Failed processing " + job.getStatus().getFailureInfo());
+            runJob();
+            loader(conf).doBulkLoad(dir, target);
+            return true;
+        } finally {
+            tempStorage.cleanup(job);
+            FileSystem fs = dir.getFileSystem(conf);
+            if (fs.exists(dir)) fs.delete(dir, true);
+        }
+    }
 
-            // if there are no rows in the table no result will be stored
-            Map<K, R> result = tempStorage.retrieveResults(job);
+    /**
+     * Deletes the rows of the source table, and their index rows, with a job without reducers.
+     */
+    public void deleteRows() throws IOException {
+        SecondaryIndex<?> index = SecondaryIndex.of(sourceTable.getName().getNameAsString(), converter);
+        if (index != null) {
+            index.createTable();
+            for (EntityMetadata.Property property : index.getProperties()) scan.addColumn(property.column.family, property.column.name);
+        }
+
+        job = Job.getInstance(configuration);
+        tempStorage.startRun(job);
+        job.setJarByClass(getClassForJar());
+        TableMapReduceUtil.addDependencyJars(job);
+        tempStorage.storeConverter(job, converter);
+        if (converter instanceof GenericConverter) tempStorage.storeElementClass(job, (GenericConverter) converter);
+        scan.setCacheBlocks(false);
+        TableMapReduceUtil.initTableMapperJob(sourceTable.getName().getName(), scan, DeleteMapper.class,
+                ImmutableBytesWritable.class, Mutation.class, job);
+        job.setOutputFormatClass(MultiTableOutputFormat.class);
+        job.setNumReduceTasks(0);
+
+        try {
+            runJob();
+        } finally {
+            tempStorage.cleanup(job);
+        }
+    }
+
+    private static LoadIncrementalHFiles loader(Configuration conf) throws IOException {
+        try {
+            return new LoadIncrementalHFiles(conf);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes the results into the output table.
+     */
+    public void reduceIntoTable() throws IOException {
+        if (runsLocally()) {
+            Map<Object, Serializable> results = reduceLocallyToMultipleValues();
+            ((Table) outputTable).putAll(results.values());
+            return;
+        }
+
+        runJob();
+        tempStorage.cleanup(job);
+    }
+
+    private <K, R extends Serializable> Map<K, R> reduceLocallyToMultipleValues() throws IOException {
+        LocalExecutor localExecutor = localExecutor();
+        return (aggregator != null)
+                ? localExecutor.aggregateToMultipleValues(aggregator)
+                : localExecutor.reduceToMultipleValues(reducer);
+    }
+
+    private LocalExecutor localExecutor() throws IOException {
+        if (upstream == null) return new LocalExecutor(sourceTable, scan, converter, mappers);
+        // the results of the previous stages are kept in memory, like the mapped values
+        Map<Object, Serializable> input = upstream.reduceLocallyToMultipleValues();
+        return new LocalExecutor(new ArrayList<>(input.entrySet()), mappers);
+    }
 
-            return (result != null) ? result : Collections.emptyMap();
+    private void runJob() throws IOException {
+        boolean killed = false;
+        try {
+            // inside the try, so that a failing upstream stage has its dataset removed
+            if (upstream != null) upstream.runJob();
+            if (cancelled) throw new InterruptedIOException("the pipeline was cancelled");
+            long start = Metrics.start();
+            // every run gets a new job, a finished job can't be submitted again and its results are gone
+            job = createJob();
+            Metrics.record(tableName(), Operation.JOB_SETUP, start, 0);
+            start = Metrics.start();
+            boolean success = job.waitForCompletion(configuration.getBoolean(HBaseLite.VERBOSE_JOBS_KEY, false));
+            Metrics.record(tableName(), Operation.JOB_RUN, start, 0);
+            if (!success) {
+                String failure = job.getStatus().getFailureInfo();
+                tempStorage.cleanup(job);
+                throw new IOException("Failed processing " + failure);
+            }
         } catch (ClassNotFoundException | InterruptedException e) {
+            // the interrupt only stops waiting, the job would keep running on the cluster
+            killSubmittedJob();
+            killed = true;
+            tempStorage.cleanup(job);
             throw new IOException(e);
+        } finally {
+            // the job might have been submitted after kill() found it not submitted yet
+            if (cancelled && !killed) killSubmittedJob();
+            if (upstream != null) upstream.cleanupDataset();
         }
     }
 
+    private void killSubmittedJob() {
+        try {
+            if (job != null && !job.isComplete()) job.killJob();
+        } catch (IllegalStateException | IOException e) {
+            // the job was never submitted
+        }
+    }
+
+    private void cleanupDataset() throws IOException {
+        if (job == null) return; // the stage failed before creating its job
+        tempStorage.cleanup(job);
+        if (datasetDir == null) return;
+        FileSystem fs = datasetDir.getFileSystem(job.getConfiguration());
+        fs.delete(datasetDir, true);
+    }
+
+    private boolean runsLocally() throws IOException {
+        // all the stages run the same way
+        if (upstream != null) return upstream.runsLocally();
+        ExecutionMode mode = (executionMode != null)
+                ? executionMode
+                : configuration.getEnum(ExecutionMode.EXECUTION_MODE_KEY, ExecutionMode.MAPREDUCE);
+        switch (mode) {
+            case LOCAL: return true;
+            case AUTO: return LocalExecutor.isSmall(sourceTable, scan, configuration);
+            default: return false;
+        }
+    }
+
+    private String tableName() {
+        return sourceTable.getName().getNameAsString();
+    }
+
     private Class<?> getClassForJar() {
         if (mappers != null) return mappers.get(0).getClass();
         if (reducer != null) return reducer.getClass();
+        if (aggregator != null) return aggregator.getClass();
         return JobBuilder.class;
     }
 }
@@ -0,0 +1,64 @@
+package me.jaksa.hbase.lite;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * A pipeline submitted with one of the async methods, e.g. {@link Table#reduceAsync(SerializableFunction)}.
+ * At most {@link HBaseLite#MAX_CONCURRENT_JOBS_KEY} pipelines run at the same time, the others wait in a queue.
+ * This class is thread safe.
+ *
+ * @param <R> the type of the result
+ */
+public class JobHandle<R> {
+    private final JobBuilder jobBuilder;
+    private final CompletableFuture<R> result = new CompletableFuture<>();
+    private volatile Future<?> task;
+
+    JobHandle(JobBuilder jobBuilder) {
+        this.jobBuilder = jobBuilder;
+    }
+
+    /**
+     * @return a future that completes with the result of the pipeline
+     */
+    public CompletableFuture<R> getResult() {
+        return result;
+    }
+
+    /**
+     * @return the progress between 0 and 1, the pipelines that run locally report no progress until they are done
+     */
+    public float getProgress() {
+        if (result.isDone()) return 1;
+        return jobBuilder.getProgress();
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * Kills the running map reduce jobs and stops the pipeline, or removes it from the queue if it hasn't started.
+     *
+     * @return false if the pipeline had already completed
+     */
+    public boolean cancel() {
+        if (!result.cancel(false)) return false;
+        jobBuilder.kill();
+        if (task != null) task.cancel(true);
+        return true;
+    }
+
+    void setTask(Future<?> task) {
+        this.task = task;
+    }
+
+    void complete(R value) {
+        result.complete(value);
+    }
+
+    void fail(Throwable e) {
+        result.completeExceptionally(e);
+    }
+}
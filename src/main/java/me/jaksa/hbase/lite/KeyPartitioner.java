@@ -0,0 +1,16 @@
+package me.jaksa.hbase.lite;
+
+import java.io.Serializable;
+
+/**
+ * Assigns the partition keys to the reducers of a job.
+ *
+ * @param <K> the type of the partition key
+ * @see PartitionOptions#partitioner(KeyPartitioner)
+ */
+public interface KeyPartitioner<K> extends Serializable {
+    /**
+     * @return the reducer between 0 and numReducers - 1 that processes the partition
+     */
+    int partition(K key, int numReducers);
+}
@@ -0,0 +1,320 @@
+package me.jaksa.hbase.lite;
+
+import com.google.common.collect.Iterables;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.ClusterStatus;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.ServerName;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Runs the map and reduce functions inside the client JVM. Every region is scanned by its own task
+ * on a fork/join pool (or every chunk of the input when processing the results of a previous stage), the mapped values are collected into concurrent maps by partition and then
+ * every partition is reduced by its own task.
+ *
+ * All the mapped values are kept in memory, unless the job is an aggregation or writes them into a table. Like in Map/Reduce the functions
+ * may return null keys and values, they are stored as a placeholder because the concurrent collections reject nulls.
+ */
+class LocalExecutor {
+    /** tables with an estimated size below this number of bytes are processed locally in AUTO mode */
+    public static final String MAX_BYTES_KEY = "hbase-lite.local.max-bytes";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static ForkJoinPool pool;
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final Object NULL = new Object();
+
+    private final HTable sourceTable;
+    private final Scan scan;
+    private final Converter converter;
+    private final List<?> input;
+    private final List<SerializableFunction> mappers;
+
+    LocalExecutor(HTable sourceTable, Scan scan, Converter converter, List<SerializableFunction> mappers) {
+        this.sourceTable = sourceTable;
+        this.scan = scan;
+        this.converter = converter;
+        this.input = null;
+        this.mappers = mappers;
+    }
+
+    /**
+     * Creates an executor that processes the given elements instead of a table.
+     */
+    LocalExecutor(List<?> input, List<SerializableFunction> mappers) {
+        this.sourceTable = null;
+        this.scan = null;
+        this.converter = null;
+        this.input = input;
+        this.mappers = mappers;
+    }
+
+    /**
+     * @return true if the regions overlapping with the scan hold less data than the local execution threshold,
+     * counting the store files and the memstores, false if the size of one of the regions is unknown
+     */
+    static boolean isSmall(HTable table, Scan scan, Configuration configuration) throws IOException {
+        Map<byte[], RegionLoad> loads = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        try (Admin admin = HBaseLite.getConnection().getAdmin()) {
+            ClusterStatus status = admin.getClusterStatus();
+            for (ServerName server : status.getServers()) loads.putAll(status.getLoad(server).getRegionsLoad());
+        }
+        return isSmall(table.getRegionLocations().keySet(), loads, scan, configuration.getLong(MAX_BYTES_KEY, DEFAULT_MAX_BYTES));
+    }
+
+    static boolean isSmall(Collection<HRegionInfo> regions, Map<byte[], RegionLoad> loads, Scan scan, long maxBytes) {
+        long size = 0;
+        for (HRegionInfo region : regions) {
+            if (!overlaps(region, scan)) continue;
+            RegionLoad load = loads.get(region.getRegionName());
+            // e.g. a region that is moving, better to use a Map/Reduce job than to load too much data
+            if (load == null) return false;
+            size += (long) (load.getStorefileSizeMB() + load.getMemStoreSizeMB()) * 1024 * 1024;
+            if (size > maxBytes) return false;
+        }
+        return true;
+    }
+
+    <R> R reduceToSingleValue(Function reducer) throws IOException {
+        Map<Object, Queue<Object>> partitions = partition();
+        Iterable<Object> values = partitions.isEmpty() ? Collections.emptyList() : unmask(partitions.values().iterator().next());
+        return (R) reducer.apply(values);
+    }
+
+    <K, R> Map<K, R> reduceToMultipleValues(Function reducer) throws IOException {
+        Map<Object, Queue<Object>> partitions = partition();
+        ConcurrentMap<Object, Object> results = new ConcurrentHashMap<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Map.Entry<Object, Queue<Object>> partition : partitions.entrySet()) {
+            tasks.add(getPool().submit(() -> {
+                results.put(partition.getKey(), mask(reducer.apply(unmask(partition.getValue()))));
+            }));
+        }
+        joinAll(tasks);
+        return unmask(results);
+    }
+
+    <A extends Serializable> A aggregateToSingleValue(Aggregator aggregator) throws IOException {
+        Map<Object, A> partials = aggregate(aggregator);
+        return partials.isEmpty() ? (A) aggregator.zero() : partials.values().iterator().next();
+    }
+
+    <K, A extends Serializable> Map<K, A> aggregateToMultipleValues(Aggregator aggregator) throws IOException {
+        return (Map<K, A>) aggregate(aggregator);
+    }
+
+    /**
+     * Puts the mapped values into the table a chunk at a time, while the regions are still being scanned.
+     */
+    <T> void putInto(Table<T> table) throws IOException {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Split split : splits()) {
+            tasks.add(getPool().submit(() -> {
+                List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+                split.process(chain -> {
+                    chunk.add((T) chain.getValue());
+                    if (chunk.size() >= CHUNK_SIZE) putChunk(table, chunk);
+                });
+                putChunk(table, chunk);
+                return null;
+            }));
+        }
+        joinAll(tasks);
+    }
+
+    // the regions are scanned in parallel but the table is written by one task at a time
+    private static <T> void putChunk(Table<T> table, List<T> chunk) throws IOException {
+        if (chunk.isEmpty()) return;
+        synchronized (table) {
+            table.putAll(chunk);
+        }
+        chunk.clear();
+    }
+
+    private Map<Object, Queue<Object>> partition() throws IOException {
+        ConcurrentMap<Object, Queue<Object>> partitions = new ConcurrentHashMap<>();
+        processSplits(chain -> partitions
+                .computeIfAbsent(mask(chain.getKey()), k -> new ConcurrentLinkedQueue<>())
+                .add(mask(chain.getValue())));
+        return partitions;
+    }
+
+    private <A extends Serializable> Map<Object, A> aggregate(Aggregator<Object, A> aggregator) throws IOException {
+        ConcurrentMap<Object, Object> results = new ConcurrentHashMap<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Split split : splits()) {
+            tasks.add(getPool().submit(() -> {
+                // every region accumulates its own partials and merges them at the end
+                Map<Object, A> partials = new HashMap<>();
+                split.process(chain -> {
+                    A partial = partials.get(chain.getKey());
+                    if (partial == null) partial = aggregator.zero();
+                    partials.put(chain.getKey(), aggregator.accumulate(partial, chain.getValue()));
+                });
+                for (Map.Entry<Object, A> partial : partials.entrySet()) {
+                    // merge would remove the key if the result was null
+                    results.merge(mask(partial.getKey()), mask(partial.getValue()),
+                            (a, b) -> mask(aggregator.merge(unmask(a), unmask(b))));
+                }
+                return null;
+            }));
+        }
+        joinAll(tasks);
+        return unmask(results);
+    }
+
+    private static Object mask(Object o) {
+        return (o == null) ? NULL : o;
+    }
+
+    private static <V> V unmask(Object o) {
+        return (o == NULL) ? null : (V) o;
+    }
+
+    private static Iterable<Object> unmask(Queue<Object> values) {
+        return Iterables.transform(values, LocalExecutor::unmask);
+    }
+
+    private static <K, V> Map<K, V> unmask(Map<Object, Object> results) {
+        Map<K, V> unmasked = new HashMap<>();
+        for (Map.Entry<Object, Object> result : results.entrySet()) unmasked.put(unmask(result.getKey()), unmask(result.getValue()));
+        return unmasked;
+    }
+
+    private void processSplits(RowHandler handler) throws IOException {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Split split : splits()) {
+            tasks.add(getPool().submit(() -> {
+                split.process(handler);
+                return null;
+            }));
+        }
+        joinAll(tasks);
+    }
+
+    private List<Split> splits() throws IOException {
+        List<Split> splits = new ArrayList<>();
+        if (input == null) {
+            for (Scan regionScan : regionScans()) splits.add(handler -> scanRegion(regionScan, handler));
+            return splits;
+        }
+        for (int start = 0; start < input.size(); start += CHUNK_SIZE) {
+            List<?> chunk = input.subList(start, Math.min(start + CHUNK_SIZE, input.size()));
+            splits.add(handler -> {
+                MapperChain chain = new MapperChain(mappers);
+                for (Object element : chunk) {
+                    chain.apply(element);
+                    handler.handle(chain);
+                }
+            });
+        }
+        return splits;
+    }
+
+    private void scanRegion(Scan regionScan, RowHandler handler) throws IOException {
+        MapperChain chain = new MapperChain(mappers);
+        TableName tableName = sourceTable.getName();
+        try (org.apache.hadoop.hbase.client.Table table = HBaseLite.getConnection().getTable(tableName);
+             ResultScanner scanner = table.getScanner(regionScan)) {
+            for (Result result : scanner) {
+                chain.apply(converter.convert(result));
+                handler.handle(chain);
+            }
+        }
+    }
+
+    /**
+     * @return one scan for every region that overlaps with the rows requested by the scan
+     */
+    List<Scan> regionScans() throws IOException {
+        Pair<byte[][], byte[][]> keys = sourceTable.getStartEndKeys();
+        byte[] scanStart = scan.getStartRow();
+        byte[] scanStop = scan.getStopRow();
+
+        List<Scan> scans = new ArrayList<>();
+        for (int i = 0; i < keys.getFirst().length; i++) {
+            byte[] start = max(keys.getFirst()[i], scanStart);
+            byte[] stop = minStop(keys.getSecond()[i], scanStop);
+            if (stop.length > 0 && Bytes.compareTo(start, stop) >= 0) continue; // no overlap
+
+            Scan regionScan = new Scan(scan);
+            regionScan.setStartRow(start);
+            regionScan.setStopRow(stop);
+            scans.add(regionScan);
+        }
+        return scans;
+    }
+
+    private static boolean overlaps(HRegionInfo region, Scan scan) {
+        byte[] stop = minStop(region.getEndKey(), scan.getStopRow());
+        return stop.length == 0 || Bytes.compareTo(max(region.getStartKey(), scan.getStartRow()), stop) < 0;
+    }
+
+    private static byte[] max(byte[] a, byte[] b) {
+        return (Bytes.compareTo(a, b) >= 0) ? a : b;
+    }
+
+    // an empty stop row means the end of the table
+    private static byte[] minStop(byte[] a, byte[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        return (Bytes.compareTo(a, b) <= 0) ? a : b;
+    }
+
+    private static void joinAll(List<ForkJoinTask<?>> tasks) throws IOException {
+        try {
+            for (ForkJoinTask<?> task : tasks) task.get();
+        } catch (InterruptedException e) {
+            for (ForkJoinTask<?> task : tasks) task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while processing locally");
+        } catch (ExecutionException e) {
+            for (ForkJoinTask<?> task : tasks) task.cancel(true);
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        // the tasks block on HBase so we don't use the common pool
+        if (pool == null) pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        return pool;
+    }
+
+    private interface RowHandler {
+        void handle(MapperChain chain) throws IOException;
+    }
+
+    private interface Split {
+        void process(RowHandler handler) throws IOException;
+    }
+}
@@ -0,0 +1,63 @@
+package me.jaksa.hbase.lite;
+
+import java.io.IOException;
+
+/**
+ * Data mapped to primitive longs. The mappers fold the numbers into statistics as they are produced,
+ * so neither the numbers nor the partial results are boxed.
+ *
+ * @param <T> the type of the data the numbers are extracted from
+ */
+public class LongMapped<T> {
+    private final JobBuilder jobBuilder;
+    private final SerializableToLongFunction<T> f;
+
+    LongMapped(JobBuilder jobBuilder, SerializableToLongFunction<T> f) {
+        this.jobBuilder = jobBuilder;
+        this.f = f;
+    }
+
+    /**
+     * @return count, sum, min, max, mean and variance of the numbers
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public LongStats stats() throws IOException {
+        jobBuilder.setAggregator(Stats.summarizingLongs(f));
+        return jobBuilder.reduceToSingleValue();
+    }
+
+    /**
+     * @return the sum or 0 if there are no numbers
+     */
+    public long sum() throws IOException {
+        return stats().getSum();
+    }
+
+    /**
+     * @return the smallest number or Long.MAX_VALUE if there are no numbers
+     */
+    public long min() throws IOException {
+        return stats().getMin();
+    }
+
+    /**
+     * @return the largest number or Long.MIN_VALUE if there are no numbers
+     */
+    public long max() throws IOException {
+        return stats().getMax();
+    }
+
+    /**
+     * @return the mean or NaN if there are no numbers
+     */
+    public double mean() throws IOException {
+        return stats().getMean();
+    }
+
+    /**
+     * @return the population variance or NaN if there are no numbers
+     */
+    public double variance() throws IOException {
+        return stats().getVariance();
+    }
+}
@@ -0,0 +1,54 @@
+package me.jaksa.hbase.lite;
+
+/**
+ * Statistics of a series of longs. The sum is exact.
+ */
+public class LongStats extends NumericStats {
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public void add(long x) {
+        addMoments(x);
+        sum += x;
+        if (x < min) min = x;
+        if (x > max) max = x;
+    }
+
+    /**
+     * Adds the numbers of the other statistics to these.
+     *
+     * @param other the statistics of other numbers
+     * @return these statistics
+     */
+    public LongStats merge(LongStats other) {
+        mergeMoments(other);
+        sum += other.sum;
+        if (other.min < min) min = other.min;
+        if (other.max > max) max = other.max;
+        return this;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the smallest number or Long.MAX_VALUE if there are no numbers
+     */
+    public long getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest number or Long.MIN_VALUE if there are no numbers
+     */
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LongStats{count=" + getCount() + ", sum=" + sum + ", min=" + min + ", max=" + max + ", mean=" + getMean() + "}";
+    }
+}
@@ -1,6 +1,7 @@
 package me.jaksa.hbase.lite;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.function.Function;
 
 /**
@@ -11,7 +12,28 @@ import java.util.function.Function;
 public interface Mapped<T> {
     public <P> Partitioned<P, T> partitionBy(PartitionFunction<T, P> f);
 
+    public <P> Partitioned<P, T> partitionBy(PartitionFunction<T, P> f, PartitionOptions options);
+
     public <I> Mapped<I> map(SerializableFunction<T, I> f);
 
+    public LongMapped<T> mapToLong(SerializableToLongFunction<T> f);
+
+    public DoubleMapped<T> mapToDouble(SerializableToDoubleFunction<T> f);
+
     public <R> R reduce(SerializableFunction<Iterable<T>, R> f) throws IOException;
+
+    /**
+     * Like {@link #reduce(SerializableFunction)} but the pipeline runs in the background.
+     */
+    public <R> JobHandle<R> reduceAsync(SerializableFunction<Iterable<T>, R> f);
+
+    public <A extends Serializable> A aggregate(Aggregator<T, A> aggregator) throws IOException;
+
+    /**
+     * Like {@link #aggregate(Aggregator)} but the pipeline runs in the background.
+     */
+    public <A extends Serializable> JobHandle<A> aggregateAsync(Aggregator<T, A> aggregator);
+
+    public <A extends Serializable> A aggregate(A zero, SerializableBiFunction<A, T, A> accumulate,
+                                                SerializableBiFunction<A, A, A> merge) throws IOException;
 }
@@ -3,6 +3,7 @@ package me.jaksa.hbase.lite;
 import org.apache.hadoop.mapreduce.Job;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.function.Function;
 
 /**
@@ -15,21 +16,65 @@ class MappedImpl<T> implements Mapped<T> {
         this.jobBuilder = jobBuilder;
     }
 
+    JobBuilder getJobBuilder() {
+        return jobBuilder;
+    }
+
     @Override
     public <P> Partitioned<P, T> partitionBy(PartitionFunction<T, P> f) {
         jobBuilder.addPartitioner(f);
         return new PartitionedImpl<>(jobBuilder);
     }
 
+    @Override
+    public <P> Partitioned<P, T> partitionBy(PartitionFunction<T, P> f, PartitionOptions options) {
+        jobBuilder.addPartitioner(f, options);
+        return new PartitionedImpl<>(jobBuilder);
+    }
+
     @Override
     public <I> Mapped<I> map(SerializableFunction<T, I> f) {
         jobBuilder.addMapper(f);
         return new MappedImpl<I>(jobBuilder);
     }
 
+    @Override
+    public LongMapped<T> mapToLong(SerializableToLongFunction<T> f) {
+        return new LongMapped<>(jobBuilder, f);
+    }
+
+    @Override
+    public DoubleMapped<T> mapToDouble(SerializableToDoubleFunction<T> f) {
+        return new DoubleMapped<>(jobBuilder, f);
+    }
+
     @Override
     public <R> R reduce(SerializableFunction<Iterable<T>, R> f) throws IOException {
         jobBuilder.setReducer(f);
         return jobBuilder.reduceToSingleValue();
     }
+
+    @Override
+    public <R> JobHandle<R> reduceAsync(SerializableFunction<Iterable<T>, R> f) {
+        jobBuilder.setReducer(f);
+        return jobBuilder.submit(jobBuilder::reduceToSingleValue);
+    }
+
+    @Override
+    public <A extends Serializable> A aggregate(Aggregator<T, A> aggregator) throws IOException {
+        jobBuilder.setAggregator(aggregator);
+        return jobBuilder.reduceToSingleValue();
+    }
+
+    @Override
+    public <A extends Serializable> JobHandle<A> aggregateAsync(Aggregator<T, A> aggregator) {
+        jobBuilder.setAggregator(aggregator);
+        return jobBuilder.submit(jobBuilder::reduceToSingleValue);
+    }
+
+    @Override
+    public <A extends Serializable> A aggregate(A zero, SerializableBiFunction<A, T, A> accumulate,
+                                                SerializableBiFunction<A, A, A> merge) throws IOException {
+        return aggregate(Aggregator.of(zero, accumulate, merge));
+    }
 }
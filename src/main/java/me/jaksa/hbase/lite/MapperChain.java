@@ -0,0 +1,46 @@
+package me.jaksa.hbase.lite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Applies the chain of user supplied mappers and partitioners to a single element.
+ * The partitioners determine the key and the mappers transform the value.
+ */
+class MapperChain {
+    private final List<SerializableFunction> mappers;
+    private Object key;
+    private Object value;
+
+    MapperChain(List<SerializableFunction> mappers) {
+        this.mappers = (mappers != null) ? mappers : Collections.emptyList();
+    }
+
+    void apply(Object t) {
+        ArrayList outKey = new ArrayList<>();
+        for (SerializableFunction mapper : mappers) {
+            if (mapper instanceof PartitionFunction) {
+                outKey.add(mapper.apply(t));
+            } else {
+                t = mapper.apply(t);
+            }
+        }
+        key = (outKey.size() == 1) ? outKey.get(0) : outKey;
+        value = t;
+    }
+
+    /**
+     * @return the partition key of the last element, a List if there are several partitioners
+     */
+    Object getKey() {
+        return key;
+    }
+
+    /**
+     * @return the mapped value of the last element
+     */
+    Object getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,126 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Result;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The JVM wide registry of the operation metrics. While the metrics are disabled {@link #start()} returns 0
+ * and {@link #record(String, Operation, long, long)} returns immediately, so the instrumented code only pays
+ * for reading a volatile field.
+ *
+ * The metrics of every table and operation are registered in JMX as
+ * "me.jaksa.hbase.lite:type=Operations,table=...,operation=..." the first time they are recorded.
+ */
+class Metrics {
+    static final String DOMAIN = "me.jaksa.hbase.lite";
+    private static final String NO_TABLE = "";
+
+    private static volatile boolean enabled;
+    private static final Map<String, Map<Operation, OperationMetrics>> METRICS = new ConcurrentHashMap<>();
+    private static final List<MetricsListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the start time to pass to {@link #record(String, Operation, long, long)}, 0 if the metrics are disabled
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records an operation that began at the given start time.
+     *
+     * @param table the name of the table or null
+     */
+    static void record(String table, Operation operation, long start, long bytes) {
+        if (start == 0) return;
+        long nanos = System.nanoTime() - start;
+        get(table, operation).record(nanos, bytes);
+        for (MetricsListener listener : LISTENERS) listener.record(table, operation, nanos, bytes);
+    }
+
+    static OperationMetrics get(String table, Operation operation) {
+        Map<Operation, OperationMetrics> tableMetrics = METRICS.computeIfAbsent(table == null ? NO_TABLE : table,
+                t -> new ConcurrentHashMap<>());
+        OperationMetrics metrics = tableMetrics.get(operation);
+        if (metrics != null) return metrics;
+        return tableMetrics.computeIfAbsent(operation, op -> register(table, op, new OperationMetrics()));
+    }
+
+    static void addListener(MetricsListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    static void removeListener(MetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Forgets the recorded metrics and unregisters them from JMX.
+     */
+    static synchronized void reset() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Map.Entry<String, Map<Operation, OperationMetrics>> table : METRICS.entrySet()) {
+            for (Operation operation : table.getValue().keySet()) {
+                try {
+                    ObjectName name = objectName(table.getKey().isEmpty() ? null : table.getKey(), operation);
+                    if (server.isRegistered(name)) server.unregisterMBean(name);
+                } catch (JMException e) {
+                    // it is no longer there
+                }
+            }
+        }
+        METRICS.clear();
+    }
+
+    /**
+     * @return the bytes of the cells of a result
+     */
+    static long size(Result result) {
+        return (result == null) ? 0 : Result.getTotalSizeOfCells(result);
+    }
+
+    /**
+     * @return the bytes of the cells of a put or a delete
+     */
+    static long size(Mutation mutation) {
+        long size = 0;
+        for (List<Cell> cells : mutation.getFamilyCellMap().values()) {
+            for (Cell cell : cells) size += CellUtil.estimatedSerializedSizeOf(cell);
+        }
+        return size;
+    }
+
+    private static OperationMetrics register(String table, Operation operation, OperationMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName(table, operation));
+        } catch (JMException e) {
+            // e.g. another class loader registered the same table, the metrics are still recorded
+        }
+        return metrics;
+    }
+
+    static ObjectName objectName(String table, Operation operation) throws JMException {
+        String name = DOMAIN + ":type=Operations";
+        if (table != null) name += ",table=" + ObjectName.quote(table);
+        return new ObjectName(name + ",operation=" + operation.name().toLowerCase());
+    }
+}
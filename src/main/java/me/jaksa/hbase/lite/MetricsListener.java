@@ -0,0 +1,18 @@
+package me.jaksa.hbase.lite;
+
+/**
+ * Receives every measurement, e.g. to forward it to another metrics system.
+ * It is called by the thread that performed the operation, so it should return quickly.
+ *
+ * @see HBaseLite#addMetricsListener(MetricsListener)
+ */
+public interface MetricsListener {
+
+    /**
+     * @param table the table of the operation or null if the operation is not tied to a table
+     * @param operation the operation
+     * @param nanos how long the operation took
+     * @param bytes the bytes read or written by the operation, 0 if it doesn't apply
+     */
+    void record(String table, Operation operation, long nanos, long bytes);
+}
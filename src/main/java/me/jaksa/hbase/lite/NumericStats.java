@@ -0,0 +1,55 @@
+package me.jaksa.hbase.lite;
+
+import java.io.Serializable;
+
+/**
+ * Count, mean and variance of a series of numbers, computed in one pass. Partial statistics computed
+ * on different parts of the data can be merged without losing precision.
+ */
+public abstract class NumericStats implements Serializable {
+    private long count;
+    private double mean;
+    // the sum of the squared differences from the mean
+    private double m2;
+
+    void addMoments(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+    }
+
+    void mergeMoments(NumericStats other) {
+        if (other.count == 0) return;
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the arithmetic mean or NaN if there are no numbers
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return the population variance or NaN if there are no numbers
+     */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    /**
+     * @return the population standard deviation or NaN if there are no numbers
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+}
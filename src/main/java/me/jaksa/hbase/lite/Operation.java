@@ -0,0 +1,26 @@
+package me.jaksa.hbase.lite;
+
+/**
+ * The operations measured when the metrics are enabled, see {@link HBaseLite#enableMetrics()}.
+ */
+public enum Operation {
+    /** the request of {@link Table#get(Object)}, without the conversion */
+    GET,
+    GET_ALL,
+    PUT,
+    PUT_ALL,
+    DELETE,
+    DELETE_ALL,
+    FIND_BY,
+    /** the conversion between the objects and the HBase rows */
+    CONVERT,
+    /** the java serialization of functions and results */
+    SERIALIZE,
+    DESERIALIZE,
+    /** the planning of a Map/Reduce job until it is submitted */
+    JOB_SETUP,
+    /** the execution of a Map/Reduce job */
+    JOB_RUN,
+    /** the retrieval of the results of a Map/Reduce job */
+    JOB_RESULTS
+}
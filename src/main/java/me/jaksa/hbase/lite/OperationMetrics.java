@@ -0,0 +1,103 @@
+package me.jaksa.hbase.lite;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The count, the bytes and the latency histogram of an operation on a table. The histogram has four buckets
+ * for every power of two nanoseconds, so the percentiles are within 25% of the real latency.
+ * This class is thread safe.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private static final int SUB_BUCKETS = 4;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+
+    void record(long nanos, long bytes) {
+        nanos = Math.max(nanos, 0);
+        count.increment();
+        totalNanos.add(nanos);
+        this.bytes.add(bytes);
+        maxNanos.accumulate(nanos);
+        buckets.incrementAndGet(bucket(nanos));
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : toMillis(totalNanos.sum() / n);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return toMillis(maxNanos.get());
+    }
+
+    @Override
+    public double get50thPercentileMillis() {
+        return getPercentileMillis(0.5);
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return getPercentileMillis(0.99);
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the upper bound of the bucket containing the quantile
+     */
+    public double getPercentileMillis(double quantile) {
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) total += buckets.get(i);
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(rank, 1)) return toMillis(Math.min(upperBound(i), maxNanos.get()));
+        }
+        return getMaxMillis();
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int fraction = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return exponent * SUB_BUCKETS + fraction;
+    }
+
+    static long upperBound(int bucket) {
+        // the values below 4 have a bucket each, the buckets 4 to 7 are never used
+        if (bucket < 2 * SUB_BUCKETS) return Math.min(bucket, SUB_BUCKETS - 1);
+        int exponent = bucket / SUB_BUCKETS;
+        int fraction = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + fraction + 1) << (exponent - 2)) - 1;
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", bytes=" + getBytes() + ", mean=" + getMeanMillis() + "ms, p99="
+                + get99thPercentileMillis() + "ms, max=" + getMaxMillis() + "ms";
+    }
+}
@@ -0,0 +1,18 @@
+package me.jaksa.hbase.lite;
+
+/**
+ * The metrics of an operation on a table as exposed through JMX.
+ */
+public interface OperationMetricsMXBean {
+    long getCount();
+
+    long getBytes();
+
+    double getMeanMillis();
+
+    double getMaxMillis();
+
+    double get50thPercentileMillis();
+
+    double get99thPercentileMillis();
+}
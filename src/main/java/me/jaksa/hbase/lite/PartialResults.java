@@ -0,0 +1,51 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The partial results of an aggregation inside a mapper, one per partition. The partials are emitted when
+ * the mapper finishes or when there are too many partitions to keep in memory.
+ *
+ * @param <A> the type of the partial results
+ */
+class PartialResults<A extends Serializable> {
+    private final Map<Object, A> partials = new HashMap<>();
+    private final Aggregator<Object, A> aggregator;
+    private final ShuffleCodec codec;
+    private final int maxPartials;
+    private final HotKeys hotKeys;
+
+    /**
+     * @param hotKeys salts the hot partition keys, it can be null
+     */
+    PartialResults(Aggregator<Object, A> aggregator, ShuffleCodec codec, int maxPartials, HotKeys hotKeys) {
+        this.aggregator = aggregator;
+        this.codec = codec;
+        this.maxPartials = maxPartials;
+        this.hotKeys = hotKeys;
+    }
+
+    void add(Object partitionKey, Object value, TaskInputOutputContext<?, ?, BytesWritable, BytesWritable> context)
+            throws IOException, InterruptedException {
+        if (hotKeys != null) partitionKey = hotKeys.salt(partitionKey);
+        A partial = partials.get(partitionKey);
+        if (partial == null) partial = aggregator.zero();
+        partials.put(partitionKey, aggregator.accumulate(partial, value));
+
+        if (partials.size() >= maxPartials) flush(context);
+    }
+
+    void flush(TaskInputOutputContext<?, ?, BytesWritable, BytesWritable> context) throws IOException, InterruptedException {
+        for (Map.Entry<Object, A> partial : partials.entrySet()) {
+            context.write(new BytesWritable(codec.encode(partial.getKey())),
+                    new BytesWritable(codec.encode(partial.getValue())));
+        }
+        partials.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.IOException;
+
+/**
+ * Tuning of the shuffle of partitioned jobs. Unset options keep the Hadoop defaults.
+ * The options are ignored when the job runs locally.
+ */
+public class PartitionOptions {
+    public static final String SALT_BUCKETS_KEY = "hbase-lite.partition.salt-buckets";
+    public static final String SAMPLE_SIZE_KEY = "hbase-lite.partition.sample-size";
+    public static final String HOT_KEY_FRACTION_KEY = "hbase-lite.partition.hot-key-fraction";
+    public static final int DEFAULT_SAMPLE_SIZE = 1000;
+    public static final float DEFAULT_HOT_KEY_FRACTION = 0.1f;
+
+    private int reducers;
+    private KeyPartitioner<?> partitioner;
+    private int saltBuckets;
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+    private float hotKeyFraction = DEFAULT_HOT_KEY_FRACTION;
+
+    /**
+     * @param reducers the number of reduce tasks
+     * @return these options
+     */
+    public PartitionOptions reducers(int reducers) {
+        if (reducers <= 0) throw new IllegalArgumentException("reducers must be positive");
+        this.reducers = reducers;
+        return this;
+    }
+
+    /**
+     * @param partitioner assigns the partition keys to the reducers instead of the hash of their encoding
+     * @return these options
+     */
+    public PartitionOptions partitioner(KeyPartitioner<?> partitioner) {
+        this.partitioner = partitioner;
+        return this;
+    }
+
+    /**
+     * Every mapper samples the first partition keys it produces. The keys that are more frequent than the
+     * hot key fraction of the sample are spread over several reducers and their partial results are merged
+     * when the results are retrieved. Only aggregations can be salted, because their partial results can be
+     * merged, and only when the results are retrieved by the client.
+     *
+     * @param buckets the number of reducers a hot key is spread over
+     * @return these options
+     */
+    public PartitionOptions saltHotKeys(int buckets) {
+        if (buckets < 0) throw new IllegalArgumentException("buckets can't be negative");
+        this.saltBuckets = buckets;
+        return this;
+    }
+
+    /**
+     * @param sampleSize the number of keys sampled by every mapper
+     * @param hotKeyFraction the fraction of the sample above which a key is hot
+     * @return these options
+     */
+    public PartitionOptions sampling(int sampleSize, float hotKeyFraction) {
+        if (sampleSize <= 0) throw new IllegalArgumentException("sampleSize must be positive");
+        if (hotKeyFraction <= 0 || hotKeyFraction > 1) throw new IllegalArgumentException("hotKeyFraction must be in (0, 1]");
+        this.sampleSize = sampleSize;
+        this.hotKeyFraction = hotKeyFraction;
+        return this;
+    }
+
+    boolean isSalted() {
+        return saltBuckets > 1;
+    }
+
+    void applyTo(Job job, boolean salted) throws IOException {
+        if (reducers > 0) job.setNumReduceTasks(reducers);
+        if (partitioner != null) FunctionShipper.store(job, ShufflePartitioner.PARTITIONER, partitioner);
+        if (partitioner != null || salted) job.setPartitionerClass(ShufflePartitioner.class);
+        if (salted) {
+            Configuration conf = job.getConfiguration();
+            conf.setInt(SALT_BUCKETS_KEY, saltBuckets);
+            conf.setInt(SAMPLE_SIZE_KEY, sampleSize);
+            conf.setFloat(HOT_KEY_FRACTION_KEY, hotKeyFraction);
+        }
+    }
+}
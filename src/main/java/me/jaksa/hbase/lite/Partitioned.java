@@ -5,6 +5,7 @@ import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * The results that have already been partitioned. They can be further subdivided into smaller partitions.
@@ -17,8 +18,65 @@ import java.util.function.Function;
 public interface Partitioned<K, T> {
     public <P> Partitioned<List, T> partitionBy(PartitionFunction<T, P> f);
 
+    public <P> Partitioned<List, T> partitionBy(PartitionFunction<T, P> f, PartitionOptions options);
+
     public <I> Partitioned<K, I> map(SerializableFunction<T, I> f);
 
     // maybe we should return a Map<R> here
     public <R extends Serializable> Map<K, R> reduce(SerializableFunction<Iterable<T>, R> f) throws IOException;
+
+    /**
+     * Like {@link #reduce(SerializableFunction)} but the pipeline runs in the background.
+     */
+    public <R extends Serializable> JobHandle<Map<K, R>> reduceAsync(SerializableFunction<Iterable<T>, R> f);
+
+    /**
+     * Like {@link #reduce(SerializableFunction)} but the results are streamed from HBase a page at a time,
+     * so there can be more partitions than fit in memory. Close the stream if it isn't fully consumed.
+     */
+    public <R extends Serializable> Stream<Map.Entry<K, R>> reduceToStream(SerializableFunction<Iterable<T>, R> f) throws IOException;
+
+    /**
+     * Reduces every partition and writes the results into the target table. Every reducer writes its own
+     * results, so they never pass through the client. The results are stored under the keys given by the
+     * converter of the target table, the partition keys are not stored.
+     */
+    public <R extends Serializable> void reduceInto(Table<R> target, SerializableFunction<Iterable<T>, R> f) throws IOException;
+
+    /**
+     * Reduces every partition and returns the results as the input of another stage, without bringing them
+     * to the client. The stages run together when the last one is reduced; in map reduce mode the results
+     * of the earlier stages stay in HDFS.
+     *
+     * <pre>
+     * employees.partitionBy(Employee::getDepartment).reduceToDataset(Stats::averageSalary)
+     *          .partitionBy(e -> e.getValue() > 1000).reduce(Iterables::size)
+     * </pre>
+     */
+    public <R extends Serializable> Mapped<Map.Entry<K, R>> reduceToDataset(SerializableFunction<Iterable<T>, R> f);
+
+    public <A extends Serializable> Map<K, A> aggregate(Aggregator<T, A> aggregator) throws IOException;
+
+    /**
+     * Like {@link #reduceInto(Table, SerializableFunction)} but the partitions are aggregated.
+     */
+    public <A extends Serializable> void aggregateInto(Table<A> target, Aggregator<T, A> aggregator) throws IOException;
+
+    /**
+     * Like {@link #reduceToDataset(SerializableFunction)} but the partitions are aggregated.
+     */
+    public <A extends Serializable> Mapped<Map.Entry<K, A>> aggregateToDataset(Aggregator<T, A> aggregator);
+
+    /**
+     * Like {@link #aggregate(Aggregator)} but the pipeline runs in the background.
+     */
+    public <A extends Serializable> JobHandle<Map<K, A>> aggregateAsync(Aggregator<T, A> aggregator);
+
+    /**
+     * Like {@link #aggregate(Aggregator)} but the results are streamed from HBase a page at a time.
+     */
+    public <A extends Serializable> Stream<Map.Entry<K, A>> aggregateToStream(Aggregator<T, A> aggregator) throws IOException;
+
+    public <A extends Serializable> Map<K, A> aggregate(A zero, SerializableBiFunction<A, T, A> accumulate,
+                                                        SerializableBiFunction<A, A, A> merge) throws IOException;
 }
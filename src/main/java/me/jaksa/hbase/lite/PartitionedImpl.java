@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * @author Jaksa Vuckovic
@@ -21,6 +22,12 @@ class PartitionedImpl<K, T> implements Partitioned<K, T> {
         return new PartitionedImpl<List, T>(jobBuilder);
     }
 
+    @Override
+    public <P> Partitioned<List, T> partitionBy(PartitionFunction<T, P> f, PartitionOptions options) {
+        jobBuilder.addPartitioner(f, options);
+        return new PartitionedImpl<List, T>(jobBuilder);
+    }
+
     @Override
     public <I> Partitioned<K, I> map(SerializableFunction<T, I> f) {
         jobBuilder.addMapper(f);
@@ -32,4 +39,66 @@ class PartitionedImpl<K, T> implements Partitioned<K, T> {
         jobBuilder.setReducer(f);
         return jobBuilder.reduceToMultipleValues();
     }
+
+    @Override
+    public <R extends Serializable> JobHandle<Map<K, R>> reduceAsync(SerializableFunction<Iterable<T>, R> f) {
+        jobBuilder.setReducer(f);
+        return jobBuilder.submit(jobBuilder::reduceToMultipleValues);
+    }
+
+    @Override
+    public <R extends Serializable> Stream<Map.Entry<K, R>> reduceToStream(SerializableFunction<Iterable<T>, R> f) throws IOException {
+        jobBuilder.setReducer(f);
+        return jobBuilder.<K, R>reduceToIterator().stream();
+    }
+
+    @Override
+    public <R extends Serializable> void reduceInto(Table<R> target, SerializableFunction<Iterable<T>, R> f) throws IOException {
+        jobBuilder.setReducer(f);
+        jobBuilder.setOutputTable(target);
+        jobBuilder.reduceIntoTable();
+    }
+
+    @Override
+    public <R extends Serializable> Mapped<Map.Entry<K, R>> reduceToDataset(SerializableFunction<Iterable<T>, R> f) {
+        jobBuilder.setReducer(f);
+        return new MappedImpl<>(new JobBuilder(jobBuilder));
+    }
+
+    @Override
+    public <A extends Serializable> Map<K, A> aggregate(Aggregator<T, A> aggregator) throws IOException {
+        jobBuilder.setAggregator(aggregator);
+        return jobBuilder.reduceToMultipleValues();
+    }
+
+    @Override
+    public <A extends Serializable> void aggregateInto(Table<A> target, Aggregator<T, A> aggregator) throws IOException {
+        jobBuilder.setAggregator(aggregator);
+        jobBuilder.setOutputTable(target);
+        jobBuilder.reduceIntoTable();
+    }
+
+    @Override
+    public <A extends Serializable> Mapped<Map.Entry<K, A>> aggregateToDataset(Aggregator<T, A> aggregator) {
+        jobBuilder.setAggregator(aggregator);
+        return new MappedImpl<>(new JobBuilder(jobBuilder));
+    }
+
+    @Override
+    public <A extends Serializable> JobHandle<Map<K, A>> aggregateAsync(Aggregator<T, A> aggregator) {
+        jobBuilder.setAggregator(aggregator);
+        return jobBuilder.submit(jobBuilder::reduceToMultipleValues);
+    }
+
+    @Override
+    public <A extends Serializable> Stream<Map.Entry<K, A>> aggregateToStream(Aggregator<T, A> aggregator) throws IOException {
+        jobBuilder.setAggregator(aggregator);
+        return jobBuilder.<K, A>reduceToIterator().stream();
+    }
+
+    @Override
+    public <A extends Serializable> Map<K, A> aggregate(A zero, SerializableBiFunction<A, T, A> accumulate,
+                                                        SerializableBiFunction<A, A, A> merge) throws IOException {
+        return aggregate(Aggregator.of(zero, accumulate, merge));
+    }
 }
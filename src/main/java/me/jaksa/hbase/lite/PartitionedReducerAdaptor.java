@@ -1,6 +1,8 @@
 package me.jaksa.hbase.lite;
 
 import com.google.common.collect.Iterables;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.mapreduce.TableReducer;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
@@ -18,24 +20,34 @@ import java.io.Serializable;
  */
 class PartitionedReducerAdaptor<I, R extends Serializable> extends TableReducer<BytesWritable, BytesWritable, Text> {
     private SerializableFunction<Iterable<I>, R> reducerFunction;
+    private ShuffleCodec codec;
+    private boolean datasetOutput;
+    private Converter<R> outputConverter;
 
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
-        reducerFunction = TempStorage.getInstance().loadReducerFunction(context);
+        reducerFunction = TempStorage.loadReducerFunction(context);
+        codec = TempStorage.retrieveCodec(context);
+        datasetOutput = TempStorage.isDatasetOutput(context);
+        outputConverter = TempStorage.retrieveOutputConverter(context);
     }
 
     @Override
     protected void reduce(BytesWritable key, Iterable<BytesWritable> values, Context context) throws IOException, InterruptedException {
-        Iterable<I> domainObjects = Iterables.transform(values, result -> {
-            try {
-                return (I) SerializableUtils.fromBytes(result.getBytes());
-            } catch (Exception e) {
-                return null;
-            }
-        });
+        Iterable<I> domainObjects = Iterables.transform(values, value -> ReducerAdaptor.decode(codec, value));
 
         R result = reducerFunction.apply(domainObjects);
 
-        TempStorage.getInstance().storeResult(context, key, result);
+        if (outputConverter != null) writeObject(result, context);
+        else if (datasetOutput) TempStorage.storeDatasetResult(context, key, codec.encode(result));
+        else TempStorage.storeResult(context, ReducerAdaptor.<Serializable>decode(codec, key), result);
+    }
+
+    // like Table.put, the columns of the null fields are cleared
+    private void writeObject(R result, Context context) throws IOException, InterruptedException {
+        Put put = outputConverter.toPut(result);
+        Delete nulls = GenericConverter.nullColumns(outputConverter, result);
+        if (nulls == null || !put.isEmpty()) context.write(null, put);
+        if (nulls != null) context.write(null, nulls);
     }
 }
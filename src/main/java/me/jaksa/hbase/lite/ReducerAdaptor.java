@@ -3,7 +3,6 @@ package me.jaksa.hbase.lite;
 import com.google.common.collect.Iterables;
 import org.apache.hadoop.hbase.mapreduce.TableReducer;
 import org.apache.hadoop.io.BytesWritable;
-import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 
 import java.io.IOException;
@@ -19,24 +18,28 @@ import java.io.Serializable;
  */
 class ReducerAdaptor<I, R extends Serializable> extends TableReducer<BytesWritable, BytesWritable, Text> {
     private SerializableFunction<Iterable<I>, R> reducerFunction;
+    private ShuffleCodec codec;
 
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
-        reducerFunction = TempStorage.getInstance().loadReducerFunction(context);
+        reducerFunction = TempStorage.loadReducerFunction(context);
+        codec = TempStorage.retrieveCodec(context);
     }
 
     @Override
     protected void reduce(BytesWritable key, Iterable<BytesWritable> values, Context context) throws IOException, InterruptedException {
-        Iterable<I> domainObjects = Iterables.transform(values, result -> {
-            try {
-                return (I) SerializableUtils.fromBytes(result.getBytes());
-            } catch (Exception e) {
-                return null;
-            }
-        });
+        Iterable<I> domainObjects = Iterables.transform(values, value -> decode(codec, value));
 
         R result = reducerFunction.apply(domainObjects);
 
-        TempStorage.getInstance().storeResult(context, result);
+        TempStorage.storeResult(context, result);
+    }
+
+    static <I> I decode(ShuffleCodec codec, BytesWritable value) {
+        try {
+            return (I) codec.decode(value.getBytes(), value.getLength());
+        } catch (IOException e) {
+            throw new RuntimeException("could not decode the mapper output", e);
+        }
     }
 }
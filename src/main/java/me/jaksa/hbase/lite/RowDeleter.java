@@ -0,0 +1,118 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.util.RegionSizeCalculator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Deletes the rows of a scan without keeping their keys in memory. A few workers take the regions one by one,
+ * scan them and send the deletes in batches, so the memory used is bounded by the batch size and the number
+ * of workers.
+ */
+class RowDeleter {
+    /** the number of deletes sent with each request */
+    public static final String BATCH_SIZE_KEY = "hbase-lite.delete.batch-size";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** the number of regions scanned at the same time */
+    public static final String PARALLELISM_KEY = "hbase-lite.delete.parallelism";
+    public static final int DEFAULT_PARALLELISM = 8;
+    /** tables larger than this many bytes are cleared with a Map/Reduce job */
+    public static final String JOB_THRESHOLD_KEY = "hbase-lite.delete.job-threshold";
+    public static final long DEFAULT_JOB_THRESHOLD = 10L * 1024 * 1024 * 1024;
+
+    private final HTable table;
+    private final SecondaryIndex<?> index;
+    private final Configuration configuration;
+
+    RowDeleter(HTable table, SecondaryIndex<?> index, Configuration configuration) {
+        this.table = table;
+        this.index = index;
+        this.configuration = configuration;
+    }
+
+    /**
+     * @return true if the table is too large to be cleared by this client
+     */
+    boolean isLarge() throws IOException {
+        long threshold = configuration.getLong(JOB_THRESHOLD_KEY, DEFAULT_JOB_THRESHOLD);
+        long size = 0;
+        for (long regionSize : new RegionSizeCalculator(table).getRegionSizeMap().values()) {
+            size += regionSize;
+            if (size > threshold) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param scan the rows to delete, it must read the indexed columns if the table is indexed
+     */
+    void delete(Scan scan) throws IOException {
+        int batchSize = configuration.getInt(BATCH_SIZE_KEY, DEFAULT_BATCH_SIZE);
+        scan.setCaching(batchSize);
+        scan.setCacheBlocks(false);
+        // without a condition or an index only the keys are needed
+        if (scan.getFilter() == null && index == null) {
+            scan.setFilter(new FilterList(new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+        }
+
+        Queue<Scan> regions = new ConcurrentLinkedQueue<>(new LocalExecutor(table, scan, null, null).regionScans());
+        int workers = Math.min(regions.size(), configuration.getInt(PARALLELISM_KEY, DEFAULT_PARALLELISM));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(HBaseLite.getExecutor().submit(() -> {
+                for (Scan region = regions.poll(); region != null; region = regions.poll()) deleteRegion(region, batchSize);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<?> future : futures) future.cancel(true);
+            throw new InterruptedIOException("interrupted while deleting from " + table.getName());
+        } catch (ExecutionException e) {
+            regions.clear(); // stops the other workers
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void deleteRegion(Scan region, int batchSize) throws IOException {
+        List<Delete> deletes = new ArrayList<>(batchSize);
+        List<Delete> indexDeletes = new ArrayList<>();
+        try (org.apache.hadoop.hbase.client.Table hTable = HBaseLite.getConnection().getTable(table.getName());
+             ResultScanner scanner = hTable.getScanner(region)) {
+            for (Result result : scanner) {
+                deletes.add(new Delete(result.getRow()));
+                if (index != null) indexDeletes.addAll(index.deletes(result));
+                if (deletes.size() >= batchSize) flush(hTable, deletes, indexDeletes);
+            }
+            flush(hTable, deletes, indexDeletes);
+        }
+    }
+
+    // the index rows go last, if the client fails in between findBy removes the rows left behind
+    private void flush(org.apache.hadoop.hbase.client.Table hTable, List<Delete> deletes, List<Delete> indexDeletes) throws IOException {
+        if (!deletes.isEmpty()) hTable.delete(deletes);
+        deletes.clear();
+        if (index != null) index.write(indexDeletes);
+        indexDeletes.clear();
+    }
+}
@@ -0,0 +1,32 @@
+package me.jaksa.hbase.lite;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * A hot partition key with the salt that spreads it over several reducers.
+ */
+class SaltedKey implements Serializable {
+    Object key;
+    int salt;
+
+    // used by the codec
+    SaltedKey() {}
+
+    SaltedKey(Object key, int salt) {
+        this.key = key;
+        this.salt = salt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof SaltedKey)) return false;
+        SaltedKey other = (SaltedKey) o;
+        return salt == other.salt && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(key) * 31 + salt;
+    }
+}
@@ -0,0 +1,70 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Scan;
+
+/**
+ * Tuning of the scans used for iterating over a table and for feeding Map/Reduce jobs.
+ * Unset options keep the HBase client defaults.
+ */
+public class ScanOptions {
+    private int caching;
+    private int batch;
+    private long maxResultSize;
+    private boolean cacheBlocks = true;
+
+    /**
+     * @param caching the number of rows fetched from the region server with each RPC
+     * @return these options
+     */
+    public ScanOptions caching(int caching) {
+        if (caching < 0) throw new IllegalArgumentException("caching can't be negative");
+        this.caching = caching;
+        return this;
+    }
+
+    /**
+     * Limits the number of cells returned for a row with each RPC, which is useful for very wide rows.
+     * The parts of a row are put back together before the object is converted. Map/Reduce jobs ignore this
+     * option because they receive rows one by one.
+     *
+     * @param batch the maximum number of cells per row fetched with each RPC
+     * @return these options
+     */
+    public ScanOptions batch(int batch) {
+        if (batch < 0) throw new IllegalArgumentException("batch can't be negative");
+        this.batch = batch;
+        return this;
+    }
+
+    /**
+     * @param maxResultSize the maximum number of bytes fetched from the region server with each RPC
+     * @return these options
+     */
+    public ScanOptions maxResultSize(long maxResultSize) {
+        if (maxResultSize < 0) throw new IllegalArgumentException("maxResultSize can't be negative");
+        this.maxResultSize = maxResultSize;
+        return this;
+    }
+
+    /**
+     * A full scan of a large table should not evict the blocks used by the point queries.
+     *
+     * @param cacheBlocks whether the region servers should keep the scanned blocks in the block cache
+     * @return these options
+     */
+    public ScanOptions cacheBlocks(boolean cacheBlocks) {
+        this.cacheBlocks = cacheBlocks;
+        return this;
+    }
+
+    int getBatch() {
+        return batch;
+    }
+
+    void applyTo(Scan scan, boolean splitRows) {
+        if (caching > 0) scan.setCaching(caching);
+        if (maxResultSize > 0) scan.setMaxResultSize(maxResultSize);
+        if (splitRows && batch > 0) scan.setBatch(batch);
+        scan.setCacheBlocks(cacheBlocks);
+    }
+}
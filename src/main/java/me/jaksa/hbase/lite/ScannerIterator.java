@@ -0,0 +1,82 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Converts the rows of a scanner lazily. When the scan is batched the parts of a row arrive one after
+ * the other and are merged before conversion.
+ */
+class ScannerIterator<T> implements CloseableIterator<T> {
+    private final ResultScanner scanner;
+    private final Function<Result, T> converter;
+    private final boolean mergeRows;
+    private Result lookahead;
+    private T next;
+    private boolean fetched;
+    private boolean closed;
+
+    ScannerIterator(ResultScanner scanner, Function<Result, T> converter, boolean mergeRows) {
+        this.scanner = scanner;
+        this.converter = converter;
+        this.mergeRows = mergeRows;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (fetched) return true;
+        if (closed) return false;
+
+        Result row = nextRow();
+        if (row == null) {
+            close();
+            return false;
+        }
+        next = converter.apply(row);
+        fetched = true;
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        T t = next;
+        next = null;
+        fetched = false;
+        return t;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        scanner.close();
+    }
+
+    private Result nextRow() {
+        try {
+            Result row = lookahead != null ? lookahead : scanner.next();
+            lookahead = null;
+            if (row == null || !mergeRows) return row;
+
+            List<Cell> cells = null;
+            while ((lookahead = scanner.next()) != null && Bytes.equals(lookahead.getRow(), row.getRow())) {
+                if (cells == null) cells = new ArrayList<>(row.listCells());
+                cells.addAll(lookahead.listCells());
+            }
+            return cells == null ? row : Result.create(cells);
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableExistsException;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Job;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The index of the {@link Indexed} fields of an entity. Every indexed value of an object is a row of the
+ * index table made of the field name, the length of the value, the value and the key of the object.
+ *
+ * The index is written before the object and checked against the object when it is read, so an index row
+ * that is out of date never produces a wrong match. The rows that are found to be out of date are removed.
+ *
+ * @param <T> the entity class
+ */
+class SecondaryIndex<T> {
+    static final byte[] FAMILY = Bytes.toBytes("i");
+    static final byte[] COLUMN = Bytes.toBytes("k");
+    private static final Set<String> CREATED_TABLES = ConcurrentHashMap.newKeySet();
+
+    private final String tableName;
+    private final EntityMetadata<T> metadata;
+
+    private SecondaryIndex(String tableName, EntityMetadata<T> metadata) {
+        this.tableName = tableName;
+        this.metadata = metadata;
+    }
+
+    /**
+     * @return the index of the table or null if the objects have no indexed fields
+     */
+    static <T> SecondaryIndex<T> of(String tableName, Converter<T> converter) {
+        if (!(converter instanceof GenericConverter)) return null;
+        EntityMetadata<T> metadata = ((GenericConverter<T>) converter).getMetadata();
+        if (metadata.getIndexedProperties().isEmpty()) return null;
+        return new SecondaryIndex<>(indexTableName(tableName), metadata);
+    }
+
+    static String indexTableName(String tableName) {
+        return tableName + "-idx";
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the field is not indexed
+     */
+    EntityMetadata.Property getProperty(String fieldName) {
+        EntityMetadata.Property property = metadata.getProperty(fieldName);
+        if (!property.indexed) throw new IllegalArgumentException("the field " + fieldName + " is not indexed");
+        return property;
+    }
+
+    List<EntityMetadata.Property> getProperties() {
+        return metadata.getIndexedProperties();
+    }
+
+    /**
+     * @return the index rows for the current values of the object, the null values are not indexed
+     */
+    List<Put> puts(T t) {
+        byte[] key = metadata.getKey().get(t);
+        List<Put> puts = new ArrayList<>();
+        for (EntityMetadata.Property property : getProperties()) {
+            byte[] value = property.get(t);
+            if (value != null) puts.add(put(property, value, key));
+        }
+        return puts;
+    }
+
+    /**
+     * @return the index rows for the indexed columns of a row of the table
+     */
+    List<Put> puts(Result result) {
+        List<Put> puts = new ArrayList<>();
+        for (EntityMetadata.Property property : getProperties()) {
+            byte[] value = result.getValue(property.column.family, property.column.name);
+            if (value != null) puts.add(put(property, value, result.getRow()));
+        }
+        return puts;
+    }
+
+    /**
+     * @return the deletes of the index rows for the indexed columns of a row of the table
+     */
+    List<Delete> deletes(Result result) {
+        List<Delete> deletes = new ArrayList<>();
+        for (EntityMetadata.Property property : getProperties()) {
+            byte[] value = result.getValue(property.column.family, property.column.name);
+            if (value != null) deletes.add(new Delete(row(property, value, result.getRow())));
+        }
+        return deletes;
+    }
+
+    /**
+     * @return a get that reads only the indexed columns of the row
+     */
+    Get indexedColumns(byte[] key) {
+        Get get = new Get(key);
+        for (EntityMetadata.Property property : getProperties()) get.addColumn(property.column.family, property.column.name);
+        return get;
+    }
+
+    /**
+     * @return the keys of the objects that were indexed with the value, some of them might be out of date
+     */
+    List<byte[]> find(EntityMetadata.Property property, byte[] value) throws IOException {
+        byte[] prefix = prefix(property, value);
+        Scan scan = new Scan(prefix, Table.prefixStop(prefix));
+        scan.setFilter(new KeyOnlyFilter());
+        List<byte[]> keys = new ArrayList<>();
+        try (org.apache.hadoop.hbase.client.Table index = getTable();
+             ResultScanner scanner = index.getScanner(scan)) {
+            for (Result result : scanner) {
+                byte[] row = result.getRow();
+                keys.add(Arrays.copyOfRange(row, prefix.length, row.length));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return the delete of an index row that points to an object that no longer has the value
+     */
+    Delete stale(EntityMetadata.Property property, byte[] value, byte[] key) {
+        return new Delete(row(property, value, key));
+    }
+
+    void write(List<? extends Mutation> mutations) throws IOException {
+        if (mutations.isEmpty()) return;
+        try (org.apache.hadoop.hbase.client.Table index = getTable()) {
+            index.batch(mutations, new Object[mutations.size()]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing the index " + tableName);
+        }
+    }
+
+    /**
+     * Rebuilds the index with a map only job that writes the index rows of the scanned rows.
+     */
+    void rebuild(String sourceTable, Scan scan, Converter<T> converter) throws IOException {
+        createTable();
+        Job job = Job.getInstance(HBaseLite.getConfiguration(), "rebuild " + tableName);
+        job.setJarByClass(metadata.getElementClass());
+        TableMapReduceUtil.addDependencyJars(job);
+        TempStorage.getInstance().storeConverter(job, converter);
+        TempStorage.getInstance().storeElementClass(job, (GenericConverter) converter);
+        TableMapReduceUtil.initTableMapperJob(sourceTable, scan, IndexMapper.class, ImmutableBytesWritable.class, Put.class, job);
+        TableMapReduceUtil.initTableReducerJob(tableName, null, job);
+        job.setNumReduceTasks(0);
+        try {
+            if (!job.waitForCompletion(HBaseLite.getConfiguration().getBoolean(HBaseLite.VERBOSE_JOBS_KEY, false))) {
+                throw new IOException("Failed rebuilding " + tableName + ": " + job.getStatus().getFailureInfo());
+            }
+        } catch (ClassNotFoundException | InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    org.apache.hadoop.hbase.client.Table getTable() throws IOException {
+        createTable();
+        return HBaseLite.getConnection().getTable(TableName.valueOf(tableName));
+    }
+
+    void createTable() throws IOException {
+        if (CREATED_TABLES.contains(tableName)) return;
+        HBaseAdmin hbase = new HBaseAdmin(HBaseLite.getConfiguration());
+        try {
+            if (!hbase.tableExists(tableName)) {
+                HTableDescriptor desc = new HTableDescriptor(TableName.valueOf(tableName));
+                desc.addFamily(new HColumnDescriptor(FAMILY));
+                hbase.createTable(desc);
+            }
+        } catch (TableExistsException e) {
+            // another client created it
+        } finally {
+            hbase.close();
+        }
+        CREATED_TABLES.add(tableName);
+    }
+
+    private static Put put(EntityMetadata.Property property, byte[] value, byte[] key) {
+        Put put = new Put(row(property, value, key));
+        put.addColumn(FAMILY, COLUMN, new byte[0]);
+        return put;
+    }
+
+    static byte[] row(EntityMetadata.Property property, byte[] value, byte[] key) {
+        return Bytes.add(prefix(property, value), key);
+    }
+
+    // the length makes the prefixes of different values distinct even if one value is a prefix of the other
+    static byte[] prefix(EntityMetadata.Property property, byte[] value) {
+        return Bytes.add(Bytes.toBytes(property.name), new byte[] {0}, Bytes.add(Bytes.toBytes(value.length), value));
+    }
+}
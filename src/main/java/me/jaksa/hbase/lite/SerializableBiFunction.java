@@ -0,0 +1,11 @@
+package me.jaksa.hbase.lite;
+
+import java.io.Serializable;
+import java.util.function.BiFunction;
+
+/**
+ * Two argument functions that can be serialized.
+ */
+@FunctionalInterface
+public interface SerializableBiFunction<T, U, R> extends BiFunction<T, U, R>, Serializable {
+}
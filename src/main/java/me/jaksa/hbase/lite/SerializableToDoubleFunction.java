@@ -0,0 +1,11 @@
+package me.jaksa.hbase.lite;
+
+import java.io.Serializable;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Functions producing a primitive double that can be serialized.
+ */
+@FunctionalInterface
+public interface SerializableToDoubleFunction<T> extends ToDoubleFunction<T>, Serializable {
+}
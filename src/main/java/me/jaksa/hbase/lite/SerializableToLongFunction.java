@@ -0,0 +1,11 @@
+package me.jaksa.hbase.lite;
+
+import java.io.Serializable;
+import java.util.function.ToLongFunction;
+
+/**
+ * Functions producing a primitive long that can be serialized.
+ */
+@FunctionalInterface
+public interface SerializableToLongFunction<T> extends ToLongFunction<T>, Serializable {
+}
@@ -10,15 +10,21 @@ import java.math.BigDecimal;
  */
 class SerializableUtils {
     public static byte[] toBytes(Serializable o) throws IOException {
+        long start = Metrics.start();
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ObjectOutputStream out = new ObjectOutputStream(baos);
         out.writeObject(o);
-        return baos.toByteArray();
+        byte[] bytes = baos.toByteArray();
+        Metrics.record(null, Operation.SERIALIZE, start, bytes.length);
+        return bytes;
     }
 
     public static Object fromBytes(byte[] bytes) throws IOException, ClassNotFoundException {
+        long start = Metrics.start();
         ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
-        return in.readObject();
+        Object o = in.readObject();
+        Metrics.record(null, Operation.DESERIALIZE, start, bytes.length);
+        return o;
     }
 
     public static Object fromBytes(byte[] byteValue, Class<?> type) throws IOException, ClassNotFoundException {
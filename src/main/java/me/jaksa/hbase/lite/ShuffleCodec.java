@@ -0,0 +1,44 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+
+/**
+ * Encodes the keys and values that the mappers send to the reducers. Implement this interface and
+ * set {@link #CODEC_KEY} in the configuration to plug in a different serialization format.
+ *
+ * Each map and reduce task uses its own instance, so implementations don't need to be thread safe.
+ * They must have a public no-arg constructor.
+ */
+public interface ShuffleCodec {
+    /** the configuration property used to select the codec class */
+    String CODEC_KEY = "hbase-lite.shuffle.codec";
+
+    /**
+     * Called once per task before any object is encoded or decoded.
+     *
+     * @param conf the configuration of the job
+     */
+    void configure(Configuration conf);
+
+    /**
+     * Encodes an object. Equal keys must be encoded to equal byte arrays because the reducers group the
+     * mapper output by its bytes.
+     *
+     * @param o the object to encode, can be null
+     * @return the encoded object
+     * @throws IOException if the object can't be encoded
+     */
+    byte[] encode(Object o) throws IOException;
+
+    /**
+     * Decodes an object encoded by {@link #encode(Object)}.
+     *
+     * @param bytes the buffer holding the encoded object
+     * @param length the number of valid bytes in the buffer
+     * @return the decoded object
+     * @throws IOException if the object can't be decoded
+     */
+    Object decode(byte[] bytes, int length) throws IOException;
+}
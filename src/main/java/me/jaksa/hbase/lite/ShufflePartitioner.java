@@ -0,0 +1,47 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Assigns the partitions to the reducers with the partitioner supplied by the user, or with the hash of
+ * the encoded key. The salted keys are spread over consecutive reducers.
+ */
+class ShufflePartitioner extends Partitioner<BytesWritable, BytesWritable> implements Configurable {
+    static final String PARTITIONER = "partitioner";
+
+    private Configuration conf;
+    private ShuffleCodec codec;
+    private KeyPartitioner<Object> partitioner;
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        try {
+            codec = TempStorage.retrieveCodec(conf);
+            partitioner = FunctionShipper.load(conf, PARTITIONER);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    @Override
+    public int getPartition(BytesWritable key, BytesWritable value, int numPartitions) {
+        if (partitioner == null) return (key.hashCode() & Integer.MAX_VALUE) % numPartitions;
+
+        Object decoded = ReducerAdaptor.decode(codec, key);
+        if (!(decoded instanceof SaltedKey)) return Math.floorMod(partitioner.partition(decoded, numPartitions), numPartitions);
+        SaltedKey salted = (SaltedKey) decoded;
+        return Math.floorMod(partitioner.partition(salted.key, numPartitions) + salted.salt, numPartitions);
+    }
+}
@@ -35,4 +35,65 @@ public class Stats {
         for (Object o : iterable) count++;
         return count;
     }
+
+    /**
+     * @return an aggregator that counts the elements
+     */
+    public static <T> Aggregator<T, Long> counting() {
+        return Aggregator.of(0L, (Long count, T t) -> count + 1, Long::sum);
+    }
+
+    /**
+     * @return an aggregator that sums integers into a long
+     */
+    public static Aggregator<Integer, Long> summingInts() {
+        return Aggregator.of(0L, (Long sum, Integer n) -> sum + n, Long::sum);
+    }
+
+    /**
+     * @return an aggregator that sums longs
+     */
+    public static Aggregator<Long, Long> summingLongs() {
+        return Aggregator.of(0L, (Long sum, Long n) -> sum + n, Long::sum);
+    }
+
+    /**
+     * @return an aggregator that sums floats into a double
+     */
+    public static Aggregator<Float, Double> summingFloats() {
+        return Aggregator.of(0.0, (Double sum, Float n) -> sum + n, Double::sum);
+    }
+
+    /**
+     * @return an aggregator that sums doubles
+     */
+    public static Aggregator<Double, Double> summing() {
+        return Aggregator.of(0.0, (Double sum, Double n) -> sum + n, Double::sum);
+    }
+
+    /**
+     * The statistics are updated in place, so the numbers are never boxed.
+     *
+     * @param f extracts the number from an element
+     * @return an aggregator that computes count, sum, min, max, mean and variance of longs
+     */
+    public static <T> Aggregator<T, LongStats> summarizingLongs(SerializableToLongFunction<T> f) {
+        return Aggregator.of(new LongStats(), (LongStats stats, T t) -> {
+            stats.add(f.applyAsLong(t));
+            return stats;
+        }, LongStats::merge);
+    }
+
+    /**
+     * The statistics are updated in place, so the numbers are never boxed.
+     *
+     * @param f extracts the number from an element
+     * @return an aggregator that computes count, sum, min, max, mean and variance of doubles
+     */
+    public static <T> Aggregator<T, DoubleStats> summarizingDoubles(SerializableToDoubleFunction<T> f) {
+        return Aggregator.of(new DoubleStats(), (DoubleStats stats, T t) -> {
+            stats.add(f.applyAsDouble(t));
+            return stats;
+        }, DoubleStats::merge);
+    }
 }
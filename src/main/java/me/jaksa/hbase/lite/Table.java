@@ -1,15 +1,23 @@
 package me.jaksa.hbase.lite;
 
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.util.Bytes;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * Represents an HBase table for a specific type of domain object.
@@ -21,14 +29,31 @@ import java.util.List;
  *
  * @author Jaksa Vuckovic
  */
-public class Table<T> {
+public class Table<T> implements Closeable {
+    // the number of writes sent together with their index rows
+    private static final int BATCH_SIZE = 1000;
+
     private final String name;
     private final Collection<HColumn> columns;
     private final Converter<T> converter;
+    private final SecondaryIndex<T> index;
     private HTable hTable;
+    private WriteBuffer writeBuffer;
+    private volatile boolean writeBehind;
+    private volatile EntityCache<T> cache;
+    private ExecutionMode executionMode;
+    private ScanOptions scanOptions;
+    private Filter filter;
+    private Collection<HColumn> filterColumns = Collections.emptySet();
+    private byte[] startRow = HConstants.EMPTY_START_ROW;
+    private byte[] stopRow = HConstants.EMPTY_END_ROW;
 
     public Table(Class<T> clazz) {
-        this(JPAUtils.getTableName(clazz), JPAUtils.getColumns(clazz).values(), new GenericConverter<T>(clazz));
+        this(EntityMetadata.of(clazz));
+    }
+
+    private Table(EntityMetadata<T> metadata) {
+        this(metadata.getTableName(), columnsOf(metadata), new GenericConverter<T>(metadata.getElementClass()));
     }
 
 
@@ -51,6 +76,23 @@ public class Table<T> {
         this.name = name;
         this.columns = columns;
         this.converter = converter;
+        this.index = SecondaryIndex.of(name, converter);
+    }
+
+    // used for creating views, the view doesn't share the write buffer nor the cache
+    private Table(Table<T> table) {
+        this(table, table.columns, table.converter);
+    }
+
+    private Table(Table<T> table, Collection<HColumn> columns, Converter<T> converter) {
+        this(table.name, columns, converter);
+        this.hTable = table.hTable;
+        this.executionMode = table.executionMode;
+        this.scanOptions = table.scanOptions;
+        this.filter = table.filter;
+        this.filterColumns = table.filterColumns;
+        this.startRow = table.startRow;
+        this.stopRow = table.stopRow;
     }
 
 
@@ -63,28 +105,258 @@ public class Table<T> {
      * @throws java.io.IOException if there is a communication problem with HBase
      */
     public T get(Object key) throws IOException {
+        return get(key, null);
+    }
+
+
+    /**
+     * The read path shared with {@link AsyncTable}. With a target table it is thread safe, as long as the
+     * converter is: the cache, the index and the metrics can be used concurrently.
+     *
+     * @param target the table to read from, or null for the HTable of this object
+     */
+    T get(Object key, org.apache.hadoop.hbase.client.Table target) throws IOException {
+        EntityCache<T> cache = this.cache;
+        if (cache == null) {
+            Result result = fetch(key, target);
+            if (result == null || result.isEmpty()) return null;
+            return convert(result);
+        }
+
+        byte[] row = toBytes(key);
+        EntityCache.Entry<T> cached = cache.get(row);
+        if (cached != null) return cached.value;
+        long stamp = cache.stamp();
+        Result result = fetch(key, target);
+        T t = (result == null || result.isEmpty()) ? null : convert(result);
+        // the buffered writes are not visible yet, so what we just read might be out of date
+        if (!writeBehind) cache.put(row, t, t == null ? 0 : Metrics.size(result), stamp);
+        return t;
+    }
+
+
+    private Result fetch(Object key, org.apache.hadoop.hbase.client.Table target) throws IOException {
+        long start = Metrics.start();
+        Result result = ((target != null) ? target : getHTable()).get(createGet(key));
+        Metrics.record(name, Operation.GET, start, Metrics.size(result));
+        return result;
+    }
+
+
+    private T convert(Result result) {
+        long start = Metrics.start();
+        T t = converter.convert(result);
+        Metrics.record(name, Operation.CONVERT, start, 0);
+        return t;
+    }
+
+
+    private Put toPut(T t) {
+        long start = Metrics.start();
+        Put put = converter.toPut(t);
+        Metrics.record(name, Operation.CONVERT, start, 0);
+        return put;
+    }
+
+
+    /**
+     * Retrieve the objects with the specified keys. The keys are grouped by region and the regions are
+     * queried in parallel.
+     *
+     * @param keys the keys of the objects
+     * @param <K> the type of the keys
+     * @return the objects that were found, in the order of the keys
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public <K> Map<K, T> getAll(Collection<K> keys) throws IOException {
+        long start = Metrics.start();
+        Map<K, T> results = getAllByRegion(keys);
+        Metrics.record(name, Operation.GET_ALL, start, 0);
+        return results;
+    }
+
+
+    private <K> Map<K, T> getAllByRegion(Collection<K> keys) throws IOException {
+        Map<HRegionInfo, List<K>> keysByRegion = new LinkedHashMap<>();
+        for (K key : new LinkedHashSet<>(keys)) {
+            HRegionInfo region = getHTable().getRegionLocation(toBytes(key)).getRegionInfo();
+            keysByRegion.computeIfAbsent(region, r -> new ArrayList<>()).add(key);
+        }
+
+        if (keysByRegion.size() <= 1) {
+            Map<K, T> results = new LinkedHashMap<>();
+            for (List<K> regionKeys : keysByRegion.values()) getAll(getHTable(), regionKeys, results);
+            return results;
+        }
+
+        List<Future<Map<K, T>>> futures = new ArrayList<>();
+        for (List<K> regionKeys : keysByRegion.values()) {
+            futures.add(HBaseLite.getExecutor().submit(() -> {
+                Map<K, T> regionResults = new HashMap<>();
+                try (org.apache.hadoop.hbase.client.Table table = HBaseLite.getConnection().getTable(TableName.valueOf(name))) {
+                    getAll(table, regionKeys, regionResults);
+                }
+                return regionResults;
+            }));
+        }
+
+        Map<K, T> found = new HashMap<>();
+        for (Future<Map<K, T>> future : futures) {
+            found.putAll(waitFor(future));
+        }
+
+        Map<K, T> results = new LinkedHashMap<>();
+        for (K key : keys) {
+            T t = found.get(key);
+            if (t != null) results.put(key, t);
+        }
+        return results;
+    }
+
+
+    private <K> void getAll(org.apache.hadoop.hbase.client.Table table, List<K> keys, Map<K, T> results) throws IOException {
+        List<Get> gets = new ArrayList<>(keys.size());
+        for (K key : keys) gets.add(createGet(key));
+
+        Result[] found = table.get(gets);
+        for (int i = 0; i < found.length; i++) {
+            if (found[i] != null && !found[i].isEmpty()) results.put(keys.get(i), convert(found[i]));
+        }
+    }
+
+
+    private static <R> R waitFor(Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for HBase");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+
+    String getName() {
+        return name;
+    }
+
+
+    Converter<T> getConverter() {
+        return converter;
+    }
+
+
+    Get createGet(Object key) {
         Get get = new Get(toBytes(key));
-        for (HColumn column : columns) {
+        for (HColumn column : columnsToRead()) {
             get.addColumn(column.family, column.name);
         }
-        Result result = getHTable().get(get);
-        if (result == null || result.isEmpty()) return null;
-        return converter.convert(result);
+        if (filter != null) get.setFilter(filter);
+        return get;
     }
 
 
     /**
-     * Store the object into HBase.
+     * Store the object into HBase. With the JPA annotated objects the columns of the null fields are cleared.
      *
      * @param t the object to store
      * @throws java.io.IOException if there is a communication problem with HBase
      */
     public void put(T t) throws IOException {
-        HTable hTable = getHTable();
-        hTable.put(converter.toPut(t));
-        hTable.flushCommits();
+        put(t, null);
+    }
+
+
+    /**
+     * The write path shared with {@link AsyncTable}, which sends the put with its own table instead of the
+     * write buffer or the HTable of this object, that are not thread safe. With a target table it is
+     * thread safe like {@link #get(Object, org.apache.hadoop.hbase.client.Table)}.
+     *
+     * @param target the table to send the put to, or null for this table
+     */
+    void put(T t, org.apache.hadoop.hbase.client.Table target) throws IOException {
+        if (index != null) index.write(index.puts(t));
+        Put put = toPut(t);
+        Delete nulls = GenericConverter.nullColumns(converter, t);
+        long start = Metrics.start();
+        if (target != null) {
+            send(target, put, nulls);
+        } else if (writeBehind) {
+            List<Mutation> mutations = new ArrayList<>(2);
+            addMutations(mutations, put, nulls);
+            writeBuffer.mutate(mutations);
+        } else {
+            HTable hTable = getHTable();
+            send(hTable, put, nulls);
+            hTable.flushCommits();
+        }
+        Metrics.record(name, Operation.PUT, start, start == 0 ? 0 : Metrics.size(put));
+        invalidate(put.getRow());
+    }
+
+
+    /**
+     * Store several objects into HBase. The objects are sent in batches, one request per region server.
+     * Unless write-behind is enabled the method returns after all the objects have been stored.
+     * The objects are iterated only once.
+     *
+     * @param objects the objects to store
+     * @throws org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException with the puts that failed
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public void putAll(Iterable<? extends T> objects) throws IOException {
+        long start = Metrics.start();
+        long bytes = 0;
+        WriteBuffer writeBuffer = getWriteBuffer();
+        List<Mutation> batch = new ArrayList<>();
+        List<Put> indexPuts = new ArrayList<>();
+        for (T t : objects) {
+            Put put = toPut(t);
+            addMutations(batch, put, GenericConverter.nullColumns(converter, t));
+            if (index != null) indexPuts.addAll(index.puts(t));
+            if (start != 0) bytes += Metrics.size(put);
+            if (batch.size() >= BATCH_SIZE) putBatch(writeBuffer, batch, indexPuts);
+        }
+        putBatch(writeBuffer, batch, indexPuts);
+        if (!writeBehind) writeBuffer.flush();
+        Metrics.record(name, Operation.PUT_ALL, start, bytes);
+    }
+
+
+    // the index rows go first, so that a stored object is always found by findBy
+    private void putBatch(WriteBuffer writeBuffer, List<Mutation> batch, List<Put> indexPuts) throws IOException {
+        if (index != null) index.write(indexPuts);
+        writeBuffer.mutate(batch);
+        for (Mutation mutation : batch) invalidate(mutation.getRow());
+        batch.clear();
+        indexPuts.clear();
+    }
+
+
+    // the delete of the null fields is applied together with the put, the put is empty if all the fields are null
+    private static void send(org.apache.hadoop.hbase.client.Table target, Put put, Delete nulls) throws IOException {
+        if (nulls == null) {
+            // nothing to clear, a fully populated object is written with a plain put
+            target.put(put);
+        } else if (put.isEmpty()) {
+            target.delete(nulls);
+        } else {
+            RowMutations mutations = new RowMutations(put.getRow());
+            mutations.add(put);
+            mutations.add(nulls);
+            target.mutateRow(mutations);
+        }
     }
 
+
+    private static void addMutations(List<Mutation> mutations, Put put, Delete nulls) {
+        if (nulls == null || !put.isEmpty()) mutations.add(put);
+        if (nulls != null) mutations.add(nulls);
+    }
+
+
     /**
      * Deletes the object with the specified key. This method will transform the key to a byte array before invoking
      * HBase.
@@ -93,12 +365,488 @@ public class Table<T> {
      * @throws java.io.IOException if there is a communication problem with HBase
      */
     public void delete(Object key) throws IOException {
+        delete(key, null);
+    }
+
+
+    /**
+     * The write path shared with {@link AsyncTable}, see {@link #put(Object, org.apache.hadoop.hbase.client.Table)}.
+     *
+     * @param target the table to send the delete to, or null for this table
+     */
+    void delete(Object key, org.apache.hadoop.hbase.client.Table target) throws IOException {
         Delete delete = new Delete(toBytes(key));
-        HTable hTable = getHTable();
-        hTable.delete(delete);
-        hTable.flushCommits();
+        org.apache.hadoop.hbase.client.Table reader = (target != null) ? target : getHTable();
+        List<Delete> indexDeletes = (index != null)
+                ? index.deletes(reader.get(index.indexedColumns(delete.getRow())))
+                : Collections.emptyList();
+        long start = Metrics.start();
+        if (target != null) {
+            target.delete(delete);
+        } else if (writeBehind) {
+            writeBuffer.mutate(delete);
+        } else {
+            HTable hTable = getHTable();
+            hTable.delete(delete);
+            hTable.flushCommits();
+        }
+        Metrics.record(name, Operation.DELETE, start, 0);
+        // the index rows go last, if this fails findBy removes the rows left behind
+        if (index != null) index.write(indexDeletes);
+        invalidate(delete.getRow());
+    }
+
+
+    /**
+     * Deletes the objects with the specified keys. The deletes are sent in batches, one request per region server.
+     * Unless write-behind is enabled the method returns after all the objects have been deleted.
+     * The keys are iterated only once.
+     *
+     * @param keys the keys of the objects to delete
+     * @throws org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException with the deletes that failed
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public void deleteAll(Iterable<?> keys) throws IOException {
+        // in the same batch a buffered put of the same row could be applied after the delete
+        flush();
+        long start = Metrics.start();
+        WriteBuffer writeBuffer = getWriteBuffer();
+        List<Delete> batch = new ArrayList<>();
+        for (Object key : keys) {
+            batch.add(new Delete(toBytes(key)));
+            if (batch.size() >= BATCH_SIZE) deleteBatch(writeBuffer, batch);
+        }
+        deleteBatch(writeBuffer, batch);
+        if (!writeBehind) writeBuffer.flush();
+        Metrics.record(name, Operation.DELETE_ALL, start, 0);
+    }
+
+
+    private void deleteBatch(WriteBuffer writeBuffer, List<Delete> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        List<Delete> indexDeletes = (index != null) ? indexDeletes(batch) : Collections.emptyList();
+        writeBuffer.mutate(batch);
+        if (index != null) {
+            // the index rows go last, if this fails findBy removes the rows left behind
+            if (!writeBehind) writeBuffer.flush();
+            index.write(indexDeletes);
+        }
+        for (Delete delete : batch) invalidate(delete.getRow());
+        batch.clear();
+    }
+
+
+    // called after the write, so that a get that raced with it doesn't cache the old object
+    private void invalidate(byte[] row) {
+        EntityCache<T> cache = this.cache;
+        if (cache != null) cache.invalidate(row);
+    }
+
+
+    private List<Delete> indexDeletes(List<Delete> deletes) throws IOException {
+        List<Get> gets = new ArrayList<>(deletes.size());
+        for (Delete delete : deletes) gets.add(index.indexedColumns(delete.getRow()));
+        List<Delete> indexDeletes = new ArrayList<>();
+        for (Result result : getHTable().get(gets)) {
+            if (result != null && !result.isEmpty()) indexDeletes.addAll(index.deletes(result));
+        }
+        return indexDeletes;
+    }
+
+
+    /**
+     * Finds the objects whose indexed field has the given value. The matches are read from the index table
+     * of this table with a single scan and then fetched with one batch of gets. Index rows that no longer
+     * match their object are removed.
+     *
+     * @param field the name of a field annotated with {@link Indexed}
+     * @param value the value of the field
+     * @return the objects that have the value, in the order of their keys
+     * @throws IllegalArgumentException if the field is not indexed
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public List<T> findBy(String field, Object value) throws IOException {
+        if (index == null) throw new IllegalArgumentException("the table " + name + " has no indexed fields");
+        long start = Metrics.start();
+        EntityMetadata.Property property = index.getProperty(field);
+        byte[] bytes = SerializableUtils.toBytes(value, property.type);
+        List<byte[]> keys = index.find(property, bytes);
+        if (keys.isEmpty()) {
+            Metrics.record(name, Operation.FIND_BY, start, 0);
+            return Collections.emptyList();
+        }
+
+        List<Get> gets = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            Get get = createGet(ByteBuffer.wrap(key));
+            // the value is checked even if this view doesn't read the field
+            get.addColumn(property.column.family, property.column.name);
+            gets.add(get);
+        }
+
+        List<T> found = new ArrayList<>();
+        List<Delete> stale = new ArrayList<>();
+        Result[] results = getHTable().get(gets);
+        for (int i = 0; i < results.length; i++) {
+            Result result = results[i];
+            boolean missing = result == null || result.isEmpty();
+            // with a filter a missing row might just not satisfy the condition
+            if (missing && filter != null) continue;
+            if (!missing && Bytes.equals(bytes, result.getValue(property.column.family, property.column.name))) {
+                found.add(convert(result));
+            } else {
+                stale.add(index.stale(property, bytes, keys.get(i)));
+            }
+        }
+        index.write(stale);
+        Metrics.record(name, Operation.FIND_BY, start, 0);
+        return found;
+    }
+
+
+    /**
+     * Writes the index rows of all the objects in this table, e.g. after adding an {@link Indexed} annotation
+     * to a field of a table that already has data. Small tables and the tables in {@link ExecutionMode#LOCAL}
+     * mode are indexed by this JVM, the others with a Map/Reduce job without reducers.
+     *
+     * @throws IllegalArgumentException if the objects have no indexed fields
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public void rebuildIndex() throws IOException {
+        if (index == null) throw new IllegalArgumentException("the table " + name + " has no indexed fields");
+        Scan scan = new Scan();
+        for (EntityMetadata.Property property : index.getProperties()) scan.addColumn(property.column.family, property.column.name);
+        scan.setCaching(1000);
+        scan.setCacheBlocks(false);
+
+        if (!indexesLocally(scan)) {
+            index.rebuild(name, scan, converter);
+            return;
+        }
+        List<Put> puts = new ArrayList<>();
+        try (ResultScanner scanner = getHTable().getScanner(scan)) {
+            for (Result result : scanner) {
+                puts.addAll(index.puts(result));
+                if (puts.size() >= 1000) {
+                    index.write(puts);
+                    puts.clear();
+                }
+            }
+        }
+        index.write(puts);
+    }
+
+
+    private boolean indexesLocally(Scan scan) throws IOException {
+        ExecutionMode mode = (executionMode != null)
+                ? executionMode
+                : HBaseLite.getConfiguration().getEnum(ExecutionMode.EXECUTION_MODE_KEY, ExecutionMode.MAPREDUCE);
+        switch (mode) {
+            case LOCAL: return true;
+            case AUTO: return LocalExecutor.isSmall(getHTable(), scan, HBaseLite.getConfiguration());
+            default: return false;
+        }
+    }
+
+
+    /**
+     * In write-behind mode puts and deletes are buffered on the client and sent in batches, either when the
+     * buffer is full or after the given delay. Use {@link #flush()} to send them immediately.
+     * Failures of buffered writes are reported by the next call to {@link #flush()} or {@link #close()}.
+     *
+     * @param bufferSize the number of bytes to buffer, if 0 the HBase client default is used
+     * @param maxDelayMillis the longest time a write can stay in the buffer, if 0 there is no time limit
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public synchronized void enableWriteBehind(long bufferSize, long maxDelayMillis) throws IOException {
+        if (writeBuffer != null) writeBuffer.close();
+        writeBuffer = new WriteBuffer(HBaseLite.getConnection(), TableName.valueOf(name), bufferSize, maxDelayMillis);
+        writeBehind = true;
+    }
+
+
+    /**
+     * Flushes the buffered writes and goes back to writing every object immediately.
+     *
+     * @throws java.io.IOException if some of the buffered writes failed
+     */
+    public synchronized void disableWriteBehind() throws IOException {
+        writeBehind = false;
+        flush();
+    }
+
+
+    /**
+     * Sends all the buffered writes to HBase.
+     *
+     * @throws org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException with the writes that failed
+     * since the last flush
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public void flush() throws IOException {
+        if (writeBuffer != null) writeBuffer.flush();
+    }
+
+
+    /**
+     * Flushes the buffered writes and releases the write buffer.
+     *
+     * @throws java.io.IOException if some of the buffered writes failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writeBehind = false;
+        if (writeBuffer != null) {
+            WriteBuffer buffer = writeBuffer;
+            writeBuffer = null;
+            buffer.close();
+        }
+    }
+
+    /**
+     * Loads the objects produced by a pipeline into this table, e.g. for a backfill from another table.
+     * Instead of sending puts, a Map/Reduce job writes sorted HFiles split by the current regions of this table,
+     * and the region servers then adopt the files. This skips the write ahead log and the memstores, so it
+     * doesn't trigger flushes and compactions, but the loaded objects are not replicated.
+     * In {@link ExecutionMode#LOCAL} mode, and in AUTO mode for small source tables, the objects are put instead,
+     * a chunk at a time while the source is scanned. The HFiles bypass the index of this table, so it is rebuilt
+     * after them.
+     *
+     * <pre>
+     * employees.bulkLoad(people.where(field("employer").eq("ACME")).map(Employee::new))
+     * </pre>
+     *
+     * @param source a pipeline that maps the objects of a table to objects of this table
+     * @throws java.io.IOException if the job fails or there is a communication problem with HBase
+     */
+    public void bulkLoad(Mapped<? extends T> source) throws IOException {
+        if (!(source instanceof MappedImpl)) throw new IllegalArgumentException("the source must be created by Table.map");
+        boolean hfiles = ((MappedImpl<?>) source).getJobBuilder().bulkLoadInto(this);
+        if (!hfiles) return; // the puts already invalidated the cache and wrote the index
+        EntityCache<T> cache = this.cache;
+        if (cache != null) cache.invalidateAll();
+        if (index != null) rebuildIndex();
+    }
+
+
+    /**
+     * Caches the objects returned by {@link #get(Object)} on the client. The puts and deletes of this table
+     * invalidate the cached objects, but the writes of other clients and of the views of this table are
+     * only seen when the objects expire. While write-behind is enabled the cache is not filled.
+     * Calling this method again replaces the cache with an empty one.
+     *
+     * @param options the limits of the cache
+     */
+    public void enableCache(CacheOptions options) {
+        cache = new EntityCache<>(options);
+    }
+
+
+    public void disableCache() {
+        cache = null;
+    }
+
+
+    /**
+     * @return the counters of the cache
+     * @throws IllegalStateException if the cache is not enabled
+     */
+    public CacheStats getCacheStats() {
+        EntityCache<T> cache = this.cache;
+        if (cache == null) throw new IllegalStateException("the cache of " + name + " is not enabled");
+        return cache.stats();
+    }
+
+
+    /**
+     * Creates a view of this table whose map, reduce and aggregate operations run in the given mode.
+     * In {@link ExecutionMode#LOCAL} mode the regions are scanned in parallel and the functions run inside
+     * this JVM, which avoids the startup cost of a Map/Reduce job.
+     *
+     * @param mode where to run the functions
+     * @return a view of this table
+     */
+    public Table<T> using(ExecutionMode mode) {
+        Table<T> view = new Table<>(this);
+        view.executionMode = mode;
+        return view;
+    }
+
+
+    /**
+     * Creates a view of this table that contains only the objects satisfying the condition. The condition
+     * is evaluated by the region servers for the scans, the Map/Reduce jobs and the gets.
+     * Calling this method on a view combines the conditions.
+     *
+     * @param condition the condition built with {@link Condition#field(String)} or {@link Condition#key()}
+     * @return a view of this table
+     */
+    public Table<T> where(Condition condition) {
+        Table<T> view = new Table<>(this);
+        Set<HColumn> conditionColumns = new LinkedHashSet<>(filterColumns);
+        Filter conditionFilter = condition.toFilter(this, conditionColumns);
+        view.filterColumns = conditionColumns;
+        view.filter = filter == null ? conditionFilter : new FilterList(FilterList.Operator.MUST_PASS_ALL, filter, conditionFilter);
+        return view;
+    }
+
+
+    /**
+     * Creates a view of this table with the keys between start (inclusive) and stop (exclusive).
+     * The keys are encoded like in {@link #get(Object)} and compared as bytes. Only the regions holding the
+     * range are scanned, by the iterators as well as by the Map/Reduce jobs. Point operations are not affected.
+     * Calling this method on a view intersects the ranges.
+     *
+     * @param start the first key or null to start from the beginning of the table
+     * @param stop the key after the last one or null to go to the end of the table
+     * @return a view of this table
+     */
+    public Table<T> range(Object start, Object stop) {
+        return range(start == null ? HConstants.EMPTY_START_ROW : toBytes(start),
+                stop == null ? HConstants.EMPTY_END_ROW : toBytes(stop));
+    }
+
+
+    /**
+     * Creates a view of this table with the keys that start with the prefix, e.g. prefix("tenant1|").
+     *
+     * @param prefix the beginning of the keys
+     * @return a view of this table
+     * @see #range(Object, Object)
+     */
+    public Table<T> prefix(Object prefix) {
+        byte[] start = toBytes(prefix);
+        return range(start, prefixStop(start));
+    }
+
+
+    private Table<T> range(byte[] start, byte[] stop) {
+        Table<T> view = new Table<>(this);
+        if (Bytes.compareTo(start, startRow) > 0) view.startRow = start;
+        if (stopRow.length == 0 || (stop.length > 0 && Bytes.compareTo(stop, stopRow) < 0)) view.stopRow = stop;
+        if (view.stopRow.length > 0 && Bytes.compareTo(view.startRow, view.stopRow) >= 0) {
+            throw new IllegalArgumentException("the range of keys is empty");
+        }
+        return view;
+    }
+
+
+    // the smallest key that is larger than all the keys starting with the prefix
+    static byte[] prefixStop(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] stop = Arrays.copyOf(prefix, i + 1);
+                stop[i]++;
+                return stop;
+            }
+        }
+        return HConstants.EMPTY_END_ROW;
     }
 
+
+    /**
+     * Creates a view of this table that reads and writes only the given fields. The other fields of the
+     * objects are left null, so the region servers and the mappers don't spend time on the columns
+     * that are not used.
+     *
+     * @param fields the names of the fields or columns in the "family:column" form
+     * @return a view of this table
+     */
+    public Table<T> select(String... fields) {
+        if (fields.length == 0) throw new IllegalArgumentException("you must select some fields");
+        if (!(converter instanceof GenericConverter)) {
+            return new Table<>(this, extractColumns(String.join(",", fields)), converter);
+        }
+
+        EntityMetadata<T> metadata = ((GenericConverter<T>) converter).getMetadata();
+        Set<String> fieldNames = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (!field.contains(":")) {
+                fieldNames.add(metadata.getProperty(field).name);
+                continue;
+            }
+            EntityMetadata.Property property = metadata.getProperty(extractColumns(field).get(0));
+            if (property == null) throw new IllegalArgumentException("there is no field stored in " + field);
+            fieldNames.add(property.name);
+        }
+
+        GenericConverter<T> projected = new GenericConverter<>(metadata.getElementClass(), fieldNames);
+        List<HColumn> projectedColumns = new ArrayList<>();
+        for (EntityMetadata.Property property : metadata.getProperties()) {
+            if (fieldNames.contains(property.name)) projectedColumns.add(property.column);
+        }
+        return new Table<>(this, projectedColumns, projected);
+    }
+
+
+    /**
+     * Same as {@link #select(String...)} with the fields given as getters, e.g. project(Employee::getSalary).
+     *
+     * @param getters method references to the getters of the fields
+     * @return a view of this table
+     */
+    @SafeVarargs
+    public final Table<T> project(SerializableFunction<T, ?>... getters) {
+        String[] fields = new String[getters.length];
+        for (int i = 0; i < getters.length; i++) fields[i] = JPAUtils.getFieldName(getters[i]);
+        return select(fields);
+    }
+
+
+    /**
+     * Creates a view of this table that scans with the given options. The options apply to
+     * {@link #iterator()}, {@link #stream()} and to the Map/Reduce jobs.
+     *
+     * @param options the scanner caching, batching and block cache settings
+     * @return a view of this table
+     */
+    public Table<T> withScanOptions(ScanOptions options) {
+        Table<T> view = new Table<>(this);
+        view.scanOptions = options;
+        return view;
+    }
+
+
+    /**
+     * Iterates over all the objects in the table. The rows are fetched and converted lazily, so the
+     * table can be larger than the memory. The scanner is closed when the last object has been read.
+     * Communication problems while iterating are thrown as {@link java.io.UncheckedIOException}.
+     *
+     * @return the objects in row key order
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public CloseableIterator<T> iterator() throws IOException {
+        Scan scan = scan();
+        if (scanOptions != null) scanOptions.applyTo(scan, true);
+        boolean batched = scanOptions != null && scanOptions.getBatch() > 0;
+        return new ScannerIterator<>(getHTable().getScanner(scan), converter::convert, batched);
+    }
+
+
+    /**
+     * Streams all the objects in the table. Use it in a try-with-resources unless the whole stream
+     * is consumed, so that the scanner gets closed.
+     *
+     * @return the objects in row key order
+     * @throws java.io.IOException if there is a communication problem with HBase
+     * @see #iterator()
+     */
+    public Stream<T> stream() throws IOException {
+        return iterator().stream();
+    }
+
+
+    /**
+     * Creates an asynchronous view of this table with its own thread pool.
+     *
+     * @param maxInFlight the maximum number of requests sent to HBase at the same time
+     * @return the asynchronous table
+     */
+    public AsyncTable<T> async(int maxInFlight) {
+        return new AsyncTable<>(this, maxInFlight);
+    }
+
+
     /**
      * Partition the data according to a partitioning function. The function should return
      * the partition id. All data for which the function produces the same key will end up
@@ -116,6 +864,23 @@ public class Table<T> {
     }
 
 
+    /**
+     * Like {@link #partitionBy(PartitionFunction)} with control over the shuffle, e.g. the number of reducers
+     * or the salting of hot keys.
+     *
+     * @param f the function that determines the partition
+     * @param options the options of the shuffle
+     * @param <P> type of partition id
+     * @return data that can be processed further
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public <P> Partitioned<P, T> partitionBy(PartitionFunction<T, P> f, PartitionOptions options) throws IOException {
+        JobBuilder jobBuilder = createJobBuilder();
+        jobBuilder.addPartitioner(f, options);
+        return new PartitionedImpl<P, T>(jobBuilder);
+    }
+
+
     /**
      * Transform the data using the given function.
      *
@@ -130,6 +895,30 @@ public class Table<T> {
         return new MappedImpl<>(jobBuilder);
     }
 
+    /**
+     * Transform the data to primitive longs, e.g. to compute statistics without boxing the numbers.
+     *
+     * @param f the function extracting the number
+     * @return the numbers resulting from applying the function
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public LongMapped<T> mapToLong(SerializableToLongFunction<T> f) throws IOException {
+        return new LongMapped<>(createJobBuilder(), f);
+    }
+
+
+    /**
+     * Transform the data to primitive doubles, e.g. to compute statistics without boxing the numbers.
+     *
+     * @param f the function extracting the number
+     * @return the numbers resulting from applying the function
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public DoubleMapped<T> mapToDouble(SerializableToDoubleFunction<T> f) throws IOException {
+        return new DoubleMapped<>(createJobBuilder(), f);
+    }
+
+
     /**
      * Applies a function over all the data. The function receives an Iterable
      * for the data in the table and should produce a result.
@@ -146,27 +935,119 @@ public class Table<T> {
     }
 
 
-    private JobBuilder createJobBuilder() throws IOException {TempStorage tempStorage = TempStorage.getInstance();
-        return new JobBuilder(hTable, tempStorage, HBaseLite.getConfiguration(), converter, scan());
+    /**
+     * Aggregates all the data. Unlike {@link #reduce(SerializableFunction)} the aggregation is started
+     * in the mappers, so only partial results are sent to the reducer.
+     *
+     * @param aggregator the aggregation to compute
+     * @param <A> the type of the result
+     * @return the result of the aggregation
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public <A extends Serializable> A aggregate(Aggregator<T, A> aggregator) throws IOException {
+        JobBuilder jobBuilder = createJobBuilder();
+        jobBuilder.setAggregator(aggregator);
+        return jobBuilder.reduceToSingleValue();
+    }
+
+
+    /**
+     * Aggregates all the data using the given functions.
+     *
+     * @param zero the empty result
+     * @param accumulate adds an element to a partial result
+     * @param merge combines two partial results
+     * @param <A> the type of the result
+     * @return the result of the aggregation
+     * @throws java.io.IOException if there is a communication problem with HBase
+     * @see #aggregate(Aggregator)
+     */
+    public <A extends Serializable> A aggregate(A zero, SerializableBiFunction<A, T, A> accumulate,
+                                                SerializableBiFunction<A, A, A> merge) throws IOException {
+        return aggregate(Aggregator.of(zero, accumulate, merge));
+    }
+
+
+    /**
+     * Like {@link #reduce(SerializableFunction)} but returns immediately, the pipeline runs in the background.
+     *
+     * @param f the function to be applied.
+     * @param <R> the type of the result
+     * @return a handle for following and cancelling the pipeline
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public <R extends Serializable> JobHandle<R> reduceAsync(SerializableFunction<Iterable<T>, R> f) throws IOException {
+        JobBuilder jobBuilder = createJobBuilder();
+        jobBuilder.setReducer(f);
+        return jobBuilder.submit(jobBuilder::reduceToSingleValue);
+    }
+
+
+    /**
+     * Like {@link #aggregate(Aggregator)} but returns immediately, the pipeline runs in the background.
+     *
+     * @param aggregator the aggregation to compute
+     * @param <A> the type of the result
+     * @return a handle for following and cancelling the pipeline
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public <A extends Serializable> JobHandle<A> aggregateAsync(Aggregator<T, A> aggregator) throws IOException {
+        JobBuilder jobBuilder = createJobBuilder();
+        jobBuilder.setAggregator(aggregator);
+        return jobBuilder.submit(jobBuilder::reduceToSingleValue);
+    }
+
+
+    private JobBuilder createJobBuilder() throws IOException {
+        TempStorage tempStorage = TempStorage.getInstance();
+        Scan scan = scan();
+        // the mappers receive whole rows, so the scan can't be batched
+        if (scanOptions != null) scanOptions.applyTo(scan, false);
+        JobBuilder jobBuilder = new JobBuilder(getHTable(), tempStorage, HBaseLite.getConfiguration(), converter, scan);
+        jobBuilder.setExecutionMode(executionMode);
+        return jobBuilder;
     }
 
 
     private Scan scan() {
-        Scan scan = new Scan();
-        for (HColumn column : columns) {
+        Scan scan = new Scan(startRow, stopRow);
+        for (HColumn column : columnsToRead()) {
             scan.addColumn(column.family, column.name);
         }
+        if (filter != null) scan.setFilter(filter);
         return scan;
     }
 
 
-    private HTable getHTable() throws IOException {
+    // the filters can only evaluate the columns that are read
+    private Collection<HColumn> columnsToRead() {
+        if (filterColumns.isEmpty()) return columns;
+        Set<HColumn> columnsToRead = new LinkedHashSet<>(columns);
+        columnsToRead.addAll(filterColumns);
+        return columnsToRead;
+    }
+
+
+    private synchronized WriteBuffer getWriteBuffer() throws IOException {
+        if (writeBuffer == null) writeBuffer = new WriteBuffer(HBaseLite.getConnection(), TableName.valueOf(name), 0, 0);
+        return writeBuffer;
+    }
+
+
+    HTable getHTable() throws IOException {
         // we use lazy initialization in case we'll want to serialize this class at some point
         if (hTable == null) hTable = new HTable(HBaseLite.getConfiguration(), name);
         return hTable;
     }
 
 
+    private static List<HColumn> columnsOf(EntityMetadata<?> metadata) {
+        List<HColumn> columns = new ArrayList<>();
+        for (EntityMetadata.Property property : metadata.getProperties()) columns.add(property.column);
+        return columns;
+    }
+
+
     static List<HColumn> extractColumns(String columns) {
         List<HColumn> columnsList = new ArrayList<HColumn>();
         if (columns == null || columns.isEmpty()) throw new IllegalArgumentException("you must specify some columns");
@@ -194,15 +1075,59 @@ public class Table<T> {
         throw new IllegalArgumentException("HBase doesn't support keys of type " + key.getClass().getName());
     }
 
+    /**
+     * Deletes all the objects of this table, or of this view. The rows are scanned region by region in parallel
+     * and deleted in batches, so the keys are never all in memory. Tables larger than
+     * {@link RowDeleter#JOB_THRESHOLD_KEY} are cleared with a Map/Reduce job. In {@link ExecutionMode#LOCAL} mode
+     * the rows are always deleted by this client. The buffered writes are flushed first.
+     * Only the rows of this view are deleted, call {@link #truncate()} to empty the whole table.
+     *
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
     public void deleteAll() throws IOException {
-        List<Delete> deletes = new ArrayList<>();
-        ResultScanner scanner = getHTable().getScanner(scan());
-        for (Result result : scanner) {
-            Delete delete = new Delete(result.getRow());
-            deletes.add(delete);
-        }
-        scanner.close();
-        hTable.delete(deletes);
+        // the buffered puts would bring the deleted rows back
+        flush();
+        long start = Metrics.start();
+        RowDeleter deleter = new RowDeleter(getHTable(), index, HBaseLite.getConfiguration());
+        if (executionMode != ExecutionMode.LOCAL && deleter.isLarge()) {
+            createJobBuilder().deleteRows();
+        } else {
+            Scan scan = scan();
+            if (index != null) {
+                for (EntityMetadata.Property property : index.getProperties()) scan.addColumn(property.column.family, property.column.name);
+            }
+            deleter.delete(scan);
+        }
+        EntityCache<T> cache = this.cache;
+        if (cache != null) cache.invalidateAll();
+        Metrics.record(name, Operation.DELETE_ALL, start, 0);
+    }
+
+
+    /**
+     * Deletes all the rows by recreating the table with the same regions, together with its index.
+     * This is much faster than deleting the rows, but the table is unavailable while it is recreated
+     * and the conditions and ranges of a view are ignored.
+     *
+     * @throws java.io.IOException if there is a communication problem with HBase
+     */
+    public void truncate() throws IOException {
+        flush();
+        try (Admin admin = HBaseLite.getConnection().getAdmin()) {
+            truncate(admin, TableName.valueOf(name));
+            if (index != null && admin.tableExists(TableName.valueOf(index.getTableName()))) {
+                truncate(admin, TableName.valueOf(index.getTableName()));
+            }
+        }
+        getHTable().clearRegionCache();
+        EntityCache<T> cache = this.cache;
+        if (cache != null) cache.invalidateAll();
+    }
+
+
+    private static void truncate(Admin admin, TableName tableName) throws IOException {
+        if (!admin.isTableDisabled(tableName)) admin.disableTable(tableName);
+        admin.truncateTable(tableName, true);
     }
 
 
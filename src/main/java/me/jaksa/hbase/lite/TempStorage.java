@@ -1,26 +1,38 @@
 package me.jaksa.hbase.lite;
 
-import org.apache.commons.collections.map.LinkedMap;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.KeyOnlyFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.util.ReflectionUtils;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.Function;
 
 import static org.apache.hadoop.hbase.util.Bytes.toBytes;
 
 /**
  * Used for storing parameters and results of map reduce jobs.
  *
+ * The functions of a job are shipped to the tasks by the {@link FunctionShipper}, the tasks only write the results.
+ * All the rows of a job start with a salt byte followed by the id of the job run, so the runs are spread over
+ * the pre-split regions and a run can be removed with a single range scan. The rows are removed when the
+ * results are retrieved, the rows left behind by failed clients expire with the TTL of the column family.
+ *
  * @author Jaksa Vuckovic
  */
 class TempStorage {
@@ -28,8 +40,23 @@ class TempStorage {
     public static final String TABLE_NAME = "_hbase-lite-temp";
     public static final byte[] COLUMN_FAMILY = toBytes("cf");
     public static final byte[] VALUE = toBytes("val");
-    public static final String REDUCER_KEY = "reducer-key";
-    public static final String MAPPERS_KEY = "mappers-key";
+    public static final String RUN_KEY = "hbase-lite.run";
+    /** the time to live of the temporary data in seconds, used only when the table is created */
+    public static final String TTL_KEY = "hbase-lite.temp.ttl";
+    public static final int DEFAULT_TTL = 7 * 24 * 3600;
+    /** the directory where the results of a stage are kept until the next stage has processed them */
+    public static final String DATASETS_DIR_KEY = "hbase-lite.datasets.dir";
+    public static final String DEFAULT_DATASETS_DIR = "/tmp/hbase-lite/datasets";
+    static final String DATASET_OUTPUT_KEY = "hbase-lite.dataset.output";
+    /** the directory where the HFiles of a bulk load are written, HBase must be able to move them from there */
+    public static final String BULK_LOAD_DIR_KEY = "hbase-lite.bulkload.dir";
+    public static final String DEFAULT_BULK_LOAD_DIR = "/tmp/hbase-lite/bulkload";
+    private static final String OUTPUT_PREFIX = "output.";
+    static final int SALT_BUCKETS = 16;
+    private static final int DELETE_BATCH = 1000;
+    /** the number of partition results fetched with each RPC */
+    public static final String RESULTS_CACHING_KEY = "hbase-lite.results.caching";
+    public static final int DEFAULT_RESULTS_CACHING = 1000;
     private static TempStorage instance;
 
     private final HTable hTable;
@@ -41,116 +68,325 @@ class TempStorage {
 
     private TempStorage() throws IOException {
         HBaseAdmin hbase = new HBaseAdmin(HBaseLite.getConfiguration());
-        if (!hbase.tableExists(TABLE_NAME)) {
-            HTableDescriptor desc = new HTableDescriptor(TableName.valueOf(TABLE_NAME));
-            HColumnDescriptor family = new HColumnDescriptor(COLUMN_FAMILY);
-            desc.addFamily(family);
-            hbase.createTable(desc);
+        try {
+            if (!hbase.tableExists(TABLE_NAME)) {
+                HTableDescriptor desc = new HTableDescriptor(TableName.valueOf(TABLE_NAME));
+                HColumnDescriptor family = new HColumnDescriptor(COLUMN_FAMILY);
+                family.setTimeToLive(HBaseLite.getConfiguration().getInt(TTL_KEY, DEFAULT_TTL));
+                desc.addFamily(family);
+                hbase.createTable(desc, saltSplits());
+            }
+        } finally {
+            hbase.close();
         }
         hTable = new HTable(HBaseLite.getConfiguration(), TABLE_NAME);
     }
 
-    public void storeReducerFunction(Job job, Serializable reducer) throws IOException {
-        String reducerKey = Long.toString(System.nanoTime());
-        job.getConfiguration().set(REDUCER_KEY, reducerKey);
+    private static byte[][] saltSplits() {
+        byte[][] splits = new byte[SALT_BUCKETS - 1][];
+        for (int i = 1; i < SALT_BUCKETS; i++) splits[i - 1] = new byte[] {(byte) i};
+        return splits;
+    }
 
-        Put put = new Put(Bytes.toBytes(reducerKey));
-        put.add(COLUMN_FAMILY, VALUE, SerializableUtils.toBytes(reducer));
-        hTable.put(put);
+    /**
+     * Assigns a new run id to the job, all the data of the job is stored under it.
+     */
+    public void startRun(Job job) {
+        job.getConfiguration().set(RUN_KEY, UUID.randomUUID().toString());
     }
 
-    public <T> T loadReducerFunction(Reducer.Context context) throws IOException {
-        String reducerKey = context.getConfiguration().get(REDUCER_KEY);
-        Get get = new Get(toBytes(reducerKey));
-        get.addColumn(COLUMN_FAMILY, VALUE);
-        Result results = hTable.get(get);
-        try {
-            byte[] value = results.getValue(COLUMN_FAMILY, VALUE);
-            return (T) SerializableUtils.fromBytes(value);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("could not deserialize reducer", e);
-        }
+    static byte[] runPrefix(String runId) {
+        byte salt = (byte) ((runId.hashCode() & Integer.MAX_VALUE) % SALT_BUCKETS);
+        return Bytes.add(new byte[] {salt}, toBytes(runId + "/"));
+    }
+
+    private static byte[] row(JobContext context, String name) {
+        return Bytes.add(runPrefix(context.getConfiguration().get(RUN_KEY)), toBytes(name));
+    }
+
+    public void storeReducerFunction(Job job, Serializable reducer) throws IOException {
+        FunctionShipper.store(job, "reducer", reducer);
+    }
+
+    // the methods used by the tasks are static, so the tasks don't need a connection to the temp table
+
+    public static <T> T loadReducerFunction(JobContext context) throws IOException {
+        return FunctionShipper.load(context.getConfiguration(), "reducer");
     }
 
-    public <R extends Serializable> void storeResult(Reducer.Context context, R result) throws IOException, InterruptedException {
-        String jobId = context.getJobID().getJtIdentifier();
+    public static <R extends Serializable> void storeResult(Reducer.Context context, R result) throws IOException, InterruptedException {
+        String jobId = context.getJobID().toString();
         Text keyout = new Text(jobId);
-        Put put = new Put(toBytes(jobId));
+        Put put = new Put(row(context, "result"));
         put.add(COLUMN_FAMILY, VALUE, SerializableUtils.toBytes(result));
         context.write(keyout, put);
     }
 
-    public <R extends Serializable> void storeResult(Reducer.Context context, BytesWritable key, R result) throws IOException, InterruptedException {
-        String jobId = context.getJobID().getJtIdentifier();
+    /**
+     * Every partition gets its own row, so the reducers don't all write into one huge row.
+     */
+    public static <R extends Serializable> void storeResult(Reducer.Context context, Serializable key, R result) throws IOException, InterruptedException {
+        storeResult(context, key, VALUE, result);
+    }
+
+    /**
+     * Stores the partial result of a salted partition. The partials of a partition are stored in the same row
+     * and merged when the results are retrieved.
+     */
+    public static <R extends Serializable> void storePartialResult(Reducer.Context context, Serializable key, int salt, R result) throws IOException, InterruptedException {
+        storeResult(context, key, Bytes.add(VALUE, Bytes.toBytes(salt)), result);
+    }
+
+    private static <R extends Serializable> void storeResult(Reducer.Context context, Serializable key, byte[] column, R result) throws IOException, InterruptedException {
+        String jobId = context.getJobID().toString();
         Text keyout = new Text(jobId);
-        Put put = new Put(toBytes(jobId));
-        put.add(COLUMN_FAMILY, key.copyBytes(), SerializableUtils.toBytes(result));
+        Put put = new Put(Bytes.add(row(context, "results/"), SerializableUtils.toBytes(key)));
+        put.add(COLUMN_FAMILY, column, SerializableUtils.toBytes(result));
         context.write(keyout, put);
     }
 
+    /**
+     * @return true if the results of the job feed another stage instead of being stored in HBase
+     */
+    public static boolean isDatasetOutput(JobContext context) {
+        return context.getConfiguration().getBoolean(DATASET_OUTPUT_KEY, false);
+    }
+
+    /**
+     * Writes the result of a partition to the sequence files read by the next stage.
+     *
+     * @param key the partition key as encoded by the shuffle codec
+     */
+    @SuppressWarnings("unchecked")
+    public static void storeDatasetResult(Reducer.Context context, BytesWritable key, byte[] result) throws IOException, InterruptedException {
+        context.write(key, new BytesWritable(result));
+    }
+
+    /**
+     * Retrieves the result of the job and removes its data.
+     */
     public <R extends Serializable> R retrieveResult(Job job) throws IOException, ClassNotFoundException {
-        Get get = new Get(toBytes(job.getJobID().getJtIdentifier()));
+        Get get = new Get(row(job, "result"));
         get.addColumn(COLUMN_FAMILY, VALUE);
         Result results = hTable.get(get);
+        cleanup(job);
         if (results.isEmpty()) return null;
         byte[] value = results.getValue(COLUMN_FAMILY, VALUE);
         return (R) SerializableUtils.fromBytes(value);
     }
 
-    public <K, R extends Serializable> Map<K, R> retrieveResults(Job job) throws IOException, ClassNotFoundException {
-        Get get = new Get(toBytes(job.getJobID().getJtIdentifier()));
-        Result row = hTable.get(get);
-        if (row.isEmpty()) return null;
+    /**
+     * @param merger merges the partial results of the salted partitions, it can be null if the job wasn't salted
+     */
+    public <K, R extends Serializable> Map<K, R> retrieveResults(Job job, Aggregator<?, R> merger) throws IOException {
+        Map<K, R> results = new LinkedHashMap<>();
+        try (CloseableIterator<Map.Entry<K, R>> iterator = iterateResults(job, merger)) {
+            while (iterator.hasNext()) {
+                Map.Entry<K, R> result = iterator.next();
+                results.put(result.getKey(), result.getValue());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the results of a partitioned job, fetched from HBase a page at a time. The data of the job is
+     * removed when the iterator is closed or exhausted.
+     */
+    public <K, R extends Serializable> CloseableIterator<Map.Entry<K, R>> iterateResults(Job job, Aggregator<?, R> merger) throws IOException {
+        byte[] prefix = row(job, "results/");
+        Scan scan = new Scan(prefix, Table.prefixStop(prefix));
+        scan.addFamily(COLUMN_FAMILY);
+        scan.setCaching(job.getConfiguration().getInt(RESULTS_CACHING_KEY, DEFAULT_RESULTS_CACHING));
+        CloseableIterator<Map.Entry<K, R>> results = new ScannerIterator<>(hTable.getScanner(scan), new ResultConverter<>(prefix.length, merger), false);
+
+        return new CloseableIterator<Map.Entry<K, R>>() {
+            private boolean closed;
+
+            @Override
+            public boolean hasNext() {
+                if (results.hasNext()) return true;
+                close();
+                return false;
+            }
+
+            @Override
+            public Map.Entry<K, R> next() {
+                return results.next();
+            }
+
+            @Override
+            public void close() {
+                if (closed) return;
+                closed = true;
+                results.close();
+                try {
+                    cleanup(job);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Removes all the data of the job.
+     */
+    public void cleanup(JobContext context) throws IOException {
+        FunctionShipper.cleanup(context.getConfiguration());
+        byte[] prefix = runPrefix(context.getConfiguration().get(RUN_KEY));
+        deleteRows(new Scan(prefix, Table.prefixStop(prefix)));
+    }
+
+    /**
+     * Removes the data that was written before the given time, e.g. by clients that died before retrieving
+     * the results.
+     *
+     * @return the number of removed rows
+     */
+    public long purge(long writtenBefore) throws IOException {
+        Scan scan = new Scan();
+        scan.setTimeRange(0, writtenBefore);
+        return deleteRows(scan);
+    }
 
-        NavigableMap<byte[], byte[]> familyMap = row.getFamilyMap(COLUMN_FAMILY);
+    private long deleteRows(Scan scan) throws IOException {
+        scan.setFilter(new FilterList(new FirstKeyOnlyFilter(), new KeyOnlyFilter()));
+        scan.setCaching(DELETE_BATCH);
+        scan.setCacheBlocks(false);
 
-        Map<K, R> results = new LinkedMap(familyMap.size());
-        for (byte[] key : familyMap.keySet()) {
-            results.put((K) SerializableUtils.fromBytes(key), (R) SerializableUtils.fromBytes(familyMap.get(key)));
+        long deleted = 0;
+        List<Delete> deletes = new ArrayList<>(DELETE_BATCH);
+        try (ResultScanner scanner = hTable.getScanner(scan)) {
+            for (Result result : scanner) {
+                deletes.add(new Delete(result.getRow()));
+                if (deletes.size() == DELETE_BATCH) {
+                    deleted += deletes.size();
+                    hTable.delete(deletes);
+                    deletes.clear();
+                }
+            }
         }
+        deleted += deletes.size();
+        if (!deletes.isEmpty()) hTable.delete(deletes);
+        return deleted;
+    }
 
-        return results;
+    public static <T> Converter<T> retrieveConverter(Mapper.Context context) throws IOException {
+        return retrieveConverter(context.getConfiguration(), "");
     }
 
-    public <T> Converter<T> retrieveConverter(Mapper.Context context) throws IOException {
-        Class<Converter<T>> converterClazz = (Class<Converter<T>>) context.getConfiguration().getClass("converter", Converter.class);
-        Class<T> tClass = (Class<T>) context.getConfiguration().getClass("element", Converter.class);
+    /**
+     * @return the converter of the table the reducers write into or null if the results are stored here
+     */
+    public static <R> Converter<R> retrieveOutputConverter(JobContext context) throws IOException {
+        if (context.getConfiguration().get(OUTPUT_PREFIX + "converter") == null) return null;
+        return retrieveConverter(context.getConfiguration(), OUTPUT_PREFIX);
+    }
+
+    private static <T> Converter<T> retrieveConverter(Configuration conf, String prefix) throws IOException {
+        Class<Converter<T>> converterClazz = (Class<Converter<T>>) conf.getClass(prefix + "converter", Converter.class);
+        Class<T> tClass = (Class<T>) conf.getClass(prefix + "element", Converter.class);
         try {
             Converter<T> converter = converterClazz.newInstance();
-            if (converter instanceof GenericConverter) ((GenericConverter) converter).setElementClass(tClass);
+            if (converter instanceof GenericConverter) {
+                ((GenericConverter) converter).setElementClass(tClass);
+                String[] selectedFields = conf.getStrings(prefix + "element.fields");
+                if (selectedFields != null) ((GenericConverter) converter).setSelectedFields(Arrays.asList(selectedFields));
+            }
             return converter;
         } catch (IllegalAccessException | InstantiationException e) {
             throw new IOException("the converter class must have a no-arg public constructor", e);
         }
     }
 
+    public static ShuffleCodec retrieveCodec(JobContext context) {
+        return retrieveCodec(context.getConfiguration());
+    }
+
+    public static ShuffleCodec retrieveCodec(Configuration conf) {
+        Class<? extends ShuffleCodec> codecClass = conf.getClass(ShuffleCodec.CODEC_KEY, CompactCodec.class, ShuffleCodec.class);
+        ShuffleCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+        codec.configure(conf);
+        return codec;
+    }
+
+    public void storeCodec(Job job, Class<?>... elementClasses) {
+        Configuration conf = job.getConfiguration();
+        Class<? extends ShuffleCodec> codecClass = conf.getClass(ShuffleCodec.CODEC_KEY, CompactCodec.class, ShuffleCodec.class);
+        conf.setClass(ShuffleCodec.CODEC_KEY, codecClass, ShuffleCodec.class);
+
+        // the classes configured by the user come first so that their ids are the same in every job
+        Set<String> classes = new LinkedHashSet<>(conf.getTrimmedStringCollection(CompactCodec.CLASSES_KEY));
+        for (Class<?> elementClass : elementClasses) classes.add(elementClass.getName());
+        conf.setStrings(CompactCodec.CLASSES_KEY, classes.toArray(new String[classes.size()]));
+    }
+
     public void storeConverter(Job job, Converter converter) {
-        job.getConfiguration().setClass("converter", converter.getClass(), Converter.class);
+        storeConverter(job, converter, "");
     }
 
     public void storeElementClass(Job job, GenericConverter converter) {
-        job.getConfiguration().setClass("element", converter.getElementClass(), Serializable.class);
+        storeElementClass(job, converter, "");
+    }
+
+    /**
+     * Stores the converter of the table the reducers write into.
+     */
+    public void storeOutputConverter(Job job, Converter converter) {
+        storeConverter(job, converter, OUTPUT_PREFIX);
+        if (converter instanceof GenericConverter) storeElementClass(job, (GenericConverter) converter, OUTPUT_PREFIX);
+    }
+
+    private static void storeConverter(Job job, Converter converter, String prefix) {
+        job.getConfiguration().setClass(prefix + "converter", converter.getClass(), Converter.class);
+    }
+
+    private static void storeElementClass(Job job, GenericConverter converter, String prefix) {
+        job.getConfiguration().setClass(prefix + "element", converter.getElementClass(), Serializable.class);
+        Set<String> selectedFields = converter.getSelectedFields();
+        if (selectedFields != null) job.getConfiguration().setStrings(prefix + "element.fields", selectedFields.toArray(new String[selectedFields.size()]));
     }
 
     public void storeMapperFunctions(Job job, List<SerializableFunction> mappers) throws IOException {
-        String reducerKey = Long.toString(System.nanoTime());
-        job.getConfiguration().set(MAPPERS_KEY, reducerKey);
+        FunctionShipper.store(job, "mappers", (Serializable) mappers);
+    }
 
-        Put put = new Put(Bytes.toBytes(reducerKey));
-        put.add(COLUMN_FAMILY, VALUE, SerializableUtils.toBytes((Serializable) mappers));
-        hTable.put(put);
+    /**
+     * @return the mappers or null if the job has no mappers
+     */
+    public static List<SerializableFunction> loadMapperFunctions(Mapper.Context context) throws IOException {
+        return FunctionShipper.load(context.getConfiguration(), "mappers");
     }
 
-    public List<SerializableFunction> loadMapperFunctions(Mapper.Context context) throws IOException {
-        String reducerKey = context.getConfiguration().get(MAPPERS_KEY);
-        Get get = new Get(toBytes(reducerKey));
-        get.addColumn(COLUMN_FAMILY, VALUE);
-        Result results = hTable.get(get);
-        try {
-            byte[] value = results.getValue(COLUMN_FAMILY, VALUE);
-            return (List<SerializableFunction>) SerializableUtils.fromBytes(value);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException("could not deserialize mappers", e);
+
+    /**
+     * Decodes the rows holding the results of the partitions.
+     */
+    private static class ResultConverter<K, R extends Serializable> implements Function<Result, Map.Entry<K, R>> {
+        private final int prefixLength;
+        private final Aggregator<?, R> merger;
+
+        ResultConverter(int prefixLength, Aggregator<?, R> merger) {
+            this.prefixLength = prefixLength;
+            this.merger = merger;
+        }
+
+        @Override
+        public Map.Entry<K, R> apply(Result result) {
+            byte[] row = result.getRow();
+            try {
+                K key = (K) SerializableUtils.fromBytes(Arrays.copyOfRange(row, prefixLength, row.length));
+                R value = null;
+                // a salted partition has several partial results
+                for (byte[] bytes : result.getFamilyMap(COLUMN_FAMILY).values()) {
+                    R partial = (R) SerializableUtils.fromBytes(bytes);
+                    value = (value == null) ? partial : merger.merge(value, partial);
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(key, value);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new RuntimeException("could not deserialize the result", e);
+            }
         }
     }
 }
@@ -0,0 +1,109 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers mutations on the client and sends them in batches. The batches are sent when the buffer is full,
+ * when the flush interval expires or when {@link #flush()} is called. HBase groups each batch by region
+ * server and sends one request per server.
+ *
+ * Failed mutations are collected and reported by the next call to {@link #flush()} or {@link #close()},
+ * also when they were sent in the background. This class is thread safe.
+ */
+class WriteBuffer implements Closeable, BufferedMutator.ExceptionListener {
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hbase-lite-write-buffer-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BufferedMutator mutator;
+    private final ScheduledFuture<?> periodicFlush;
+    private final List<Throwable> causes = new ArrayList<>();
+    private final List<Row> failedRows = new ArrayList<>();
+    private final List<String> servers = new ArrayList<>();
+
+    /**
+     * @param connection the connection to HBase
+     * @param tableName the table to write to
+     * @param bufferSize the number of bytes to buffer before sending a batch, if 0 or less the HBase default is used
+     * @param flushIntervalMillis the maximum time a mutation stays in the buffer, if 0 or less it stays until the
+     *                            buffer is full or flushed
+     */
+    WriteBuffer(Connection connection, TableName tableName, long bufferSize, long flushIntervalMillis) throws IOException {
+        BufferedMutatorParams params = new BufferedMutatorParams(tableName).listener(this);
+        if (bufferSize > 0) params.writeBufferSize(bufferSize);
+        mutator = connection.getBufferedMutator(params);
+        periodicFlush = (flushIntervalMillis > 0)
+                ? FLUSHER.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    public void mutate(Mutation mutation) throws IOException {
+        mutator.mutate(mutation);
+    }
+
+    public void mutate(List<? extends Mutation> mutations) throws IOException {
+        mutator.mutate(mutations);
+    }
+
+    /**
+     * Sends all the buffered mutations.
+     *
+     * @throws RetriesExhaustedWithDetailsException with the details of every mutation that failed since the last flush
+     * @throws IOException if there is a communication problem with HBase
+     */
+    public void flush() throws IOException {
+        mutator.flush();
+        reportFailures();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (periodicFlush != null) periodicFlush.cancel(false);
+        mutator.close();
+        reportFailures();
+    }
+
+    @Override
+    public synchronized void onException(RetriesExhaustedWithDetailsException e, BufferedMutator mutator) {
+        for (int i = 0; i < e.getNumExceptions(); i++) {
+            causes.add(e.getCause(i));
+            failedRows.add(e.getRow(i));
+            servers.add(e.getHostnamePort(i));
+        }
+    }
+
+    private synchronized void reportFailures() throws RetriesExhaustedWithDetailsException {
+        if (causes.isEmpty()) return;
+        RetriesExhaustedWithDetailsException e = new RetriesExhaustedWithDetailsException(
+                new ArrayList<>(causes), new ArrayList<>(failedRows), new ArrayList<>(servers));
+        causes.clear();
+        failedRows.clear();
+        servers.clear();
+        throw e;
+    }
+
+    private void flushQuietly() {
+        try {
+            mutator.flush();
+        } catch (IOException e) {
+            // failed mutations were passed to onException and will be reported by the next flush
+        }
+    }
+}
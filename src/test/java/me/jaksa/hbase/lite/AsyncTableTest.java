@@ -0,0 +1,154 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+public class AsyncTableTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AsyncTable<TestUtils.Dummy> asyncTable =
+            new AsyncTable<>(new Table<>("myTable", "cf:val", new TestUtils.DummyConverter()), 2, executor);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLimitingTheRequestsInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int n = i;
+            futures.add(asyncTable.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                release.await();
+                running.decrementAndGet();
+                return n;
+            }));
+        }
+
+        assertThat(asyncTable.getInFlight(), is(2));
+        assertThat(asyncTable.getPending(), is(8));
+
+        release.countDown();
+        for (int i = 0; i < 10; i++) assertThat(futures.get(i).get(5, TimeUnit.SECONDS), is(i));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+        assertThat(asyncTable.getInFlight(), is(0));
+    }
+
+    @Test
+    public void testFailuresCompleteTheFuture() throws Exception {
+        CompletableFuture<Object> future = asyncTable.submit(() -> { throw new IllegalStateException("boom"); });
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testFailingThePendingRequestsOnClose() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(asyncTable.submit(() -> {
+                release.await();
+                return "done";
+            }));
+        }
+
+        asyncTable.close();
+        release.countDown();
+
+        assertThat(futures.get(0).get(5, TimeUnit.SECONDS), is("done"));
+        assertThat(futures.get(1).get(5, TimeUnit.SECONDS), is("done"));
+        for (int i = 2; i < 5; i++) assertRejected(futures.get(i));
+        assertRejected(asyncTable.submit(() -> "too late"));
+        assertThat(asyncTable.getPending(), is(0));
+    }
+
+    @Test
+    public void testFailingTheRequestsRejectedByTheExecutor() throws Exception {
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+        AsyncTable<TestUtils.Dummy> rejecting =
+                new AsyncTable<>(new Table<>("myTable", "cf:val", new TestUtils.DummyConverter()), 2, shutDown);
+
+        assertRejected(rejecting.submit(() -> "never"));
+        assertThat(rejecting.getInFlight(), is(0));
+    }
+
+    @Test
+    public void testSharingTheCacheAndTheMetricsBetweenThreads() throws Exception {
+        TestUtils.DummyConverter converter = new TestUtils.DummyConverter();
+        Table<TestUtils.Dummy> table = new Table<>("myTable", "cf:val", converter);
+        table.enableCache(new CacheOptions().maxEntries(10));
+        Put put = converter.toPut(new TestUtils.Dummy("joe", "1"));
+        List<Cell> cells = new ArrayList<>(put.getFamilyCellMap().get(Bytes.toBytes("cf")));
+        org.apache.hadoop.hbase.client.Table target = Mockito.mock(org.apache.hadoop.hbase.client.Table.class);
+        when(target.get(any(Get.class))).thenReturn(Result.create(cells));
+
+        HBaseLite.enableMetrics();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        table.put(new TestUtils.Dummy("joe", "1"), target);
+                        assertThat(table.get("joe", target).value, is("1"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) future.get(30, TimeUnit.SECONDS);
+
+            CacheStats stats = table.getCacheStats();
+            assertThat(stats.getHits() + stats.getMisses(), is(800L));
+            assertThat(HBaseLite.getMetrics("myTable", Operation.PUT).getCount(), is(800L));
+            assertThat(HBaseLite.getMetrics("myTable", Operation.GET).getCount(), is(stats.getMisses()));
+        } finally {
+            HBaseLite.disableMetrics();
+            HBaseLite.resetMetrics();
+        }
+    }
+
+    private static void assertRejected(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("the request should have been rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
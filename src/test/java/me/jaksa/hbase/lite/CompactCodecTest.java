@@ -0,0 +1,117 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.*;
+
+public class CompactCodecTest {
+    private CompactCodec codec;
+
+    @Before
+    public void setUp() {
+        Configuration conf = new Configuration(false);
+        conf.set(CompactCodec.CLASSES_KEY, Employee.class.getName());
+        codec = new CompactCodec();
+        codec.configure(conf);
+    }
+
+    @Test
+    public void testEncodingJdkTypes() throws Exception {
+        testEncodingAndBack("one");
+        testEncodingAndBack("");
+        testEncodingAndBack(42);
+        testEncodingAndBack(-42);
+        testEncodingAndBack(Long.MIN_VALUE);
+        testEncodingAndBack(42.42);
+        testEncodingAndBack(42.42f);
+        testEncodingAndBack((short) 42);
+        testEncodingAndBack((byte) 42);
+        testEncodingAndBack('c');
+        testEncodingAndBack(true);
+        testEncodingAndBack(false);
+        testEncodingAndBack(new BigDecimal("-999999999999999999999999999999999.123"));
+        testEncodingAndBack(new BigInteger("999999999999999999999999999999999"));
+        testEncodingAndBack(null);
+    }
+
+    @Test
+    public void testEncodingPartitionKeys() throws Exception {
+        testEncodingAndBack(new ArrayList<>(asList("SW", 4L, 'j', null)));
+    }
+
+    @Test
+    public void testEncodingByteArrays() throws Exception {
+        byte[] bytes = {1, 2, 3};
+        byte[] encoded = codec.encode(bytes);
+        assertArrayEquals(bytes, (byte[]) codec.decode(encoded, encoded.length));
+    }
+
+    @Test
+    public void testEncodingRegisteredClasses() throws Exception {
+        Employee joe = new Employee(1L, "Joe", 30000.0, "HR", "Junior Recruiter");
+
+        byte[] encoded = codec.encode(joe);
+        Employee decoded = (Employee) codec.decode(encoded, encoded.length);
+
+        assertEquals(joe.getId(), decoded.getId());
+        assertEquals(joe.getName(), decoded.getName());
+        assertEquals(joe.getSalary(), decoded.getSalary());
+        assertEquals(joe.getDepartment(), decoded.getDepartment());
+        assertEquals(joe.getTitle(), decoded.getTitle());
+        assertThat(encoded.length, lessThan(SerializableUtils.toBytes(joe).length / 4));
+    }
+
+    @Test
+    public void testEncodingStatistics() throws Exception {
+        codec.register(LongStats.class);
+        LongStats stats = new LongStats();
+        stats.add(3);
+        stats.add(-5);
+
+        byte[] encoded = codec.encode(stats);
+        LongStats decoded = (LongStats) codec.decode(encoded, encoded.length);
+
+        assertEquals(2, decoded.getCount());
+        assertEquals(-2, decoded.getSum());
+        assertEquals(-5, decoded.getMin());
+        assertEquals(stats.getVariance(), decoded.getVariance(), 0.0);
+    }
+
+    @Test
+    public void testFallingBackToJavaSerialization() throws Exception {
+        TestUtils.Dummy dummy = new TestUtils.Dummy("joe", "1");
+
+        byte[] encoded = codec.encode(dummy);
+        TestUtils.Dummy decoded = (TestUtils.Dummy) codec.decode(encoded, encoded.length);
+
+        assertEquals("joe", decoded.name);
+        assertEquals("1", decoded.value);
+        testEncodingAndBack(asList(1, 2, 3)); // not an ArrayList
+    }
+
+    @Test
+    public void testDecodingFromALargerBuffer() throws Exception {
+        byte[] encoded = codec.encode("one");
+        byte[] buffer = Arrays.copyOf(encoded, encoded.length + 10);
+        assertEquals("one", codec.decode(buffer, encoded.length));
+    }
+
+    @Test
+    public void testEqualKeysHaveEqualEncodings() throws Exception {
+        assertArrayEquals(codec.encode(new ArrayList<>(asList("SW", 4L))), codec.encode(new ArrayList<>(asList("SW", 4L))));
+    }
+
+    private void testEncodingAndBack(Object value) throws Exception {
+        byte[] encoded = codec.encode(value);
+        assertEquals(value, codec.decode(encoded, encoded.length));
+    }
+}
@@ -0,0 +1,103 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static me.jaksa.hbase.lite.Condition.field;
+import static me.jaksa.hbase.lite.Condition.key;
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConditionTest {
+    private final Table<Employee> employees = new Table<>(Employee.class);
+
+    @Test
+    public void testComparingStrings() throws Exception {
+        Filter filter = field("name").gt("j").toFilter(employees);
+
+        assertTrue(passes(filter, employee(1L, "joe", 10.0)));
+        assertFalse(passes(filter, employee(1L, "bob", 10.0)));
+    }
+
+    @Test
+    public void testComparingNegativeAndPositiveDoubles() throws Exception {
+        double[] salaries = {Double.NEGATIVE_INFINITY, -1000.5, -3, -0.5, 0, 0.5, 3, 1000.5, Double.MAX_VALUE};
+        double[] bounds = {-1000.5, -3, -1, 0, 1, 3, 1000.5};
+
+        for (double bound : bounds) {
+            for (double salary : salaries) {
+                Cell[] row = employee(1L, "joe", salary);
+                String message = salary + " compared to " + bound;
+                assertTrue(message, passes(field("salary").gt(bound).toFilter(employees), row) == salary > bound);
+                assertTrue(message, passes(field("salary").ge(bound).toFilter(employees), row) == salary >= bound);
+                assertTrue(message, passes(field("salary").lt(bound).toFilter(employees), row) == salary < bound);
+                assertTrue(message, passes(field("salary").le(bound).toFilter(employees), row) == salary <= bound);
+            }
+        }
+    }
+
+    @Test
+    public void testComparingNegativeAndPositiveKeys() throws Exception {
+        long[] keys = {Long.MIN_VALUE, -1000, -3, -1, 0, 1, 3, 1000, Long.MAX_VALUE};
+        long[] bounds = {-1000, -3, 0, 3, 1000};
+
+        for (long bound : bounds) {
+            for (long key : keys) {
+                Cell[] row = employee(key, "joe", 1.0);
+                String message = key + " compared to " + bound;
+                assertTrue(message, passes(key().gt(bound).toFilter(employees), row) == key > bound);
+                assertTrue(message, passes(key().ge(bound).toFilter(employees), row) == key >= bound);
+                assertTrue(message, passes(key().lt(bound).toFilter(employees), row) == key < bound);
+                assertTrue(message, passes(key().le(bound).toFilter(employees), row) == key <= bound);
+            }
+        }
+    }
+
+    @Test
+    public void testCombiningConditions() throws Exception {
+        Filter filter = field("salary").ge(1000).and(field("department").eq("SW")).or(key().eq(7L)).toFilter(employees);
+
+        assertTrue(passes(filter, employee(1L, "joe", 1000.0)));
+        assertFalse(passes(filter, employee(1L, "joe", 999.0)));
+        assertTrue(passes(filter, employee(7L, "joe", 999.0)));
+    }
+
+    @Test
+    public void testMatchingPrefixes() throws Exception {
+        Filter filter = field("ext:dpt").startsWith("S").toFilter(employees);
+
+        assertTrue(passes(filter, employee(1L, "joe", 10.0)));
+        assertFalse(passes(field("name").startsWith("x").toFilter(employees), employee(1L, "joe", 10.0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testComparingUnknownFields() throws Exception {
+        field("age").gt(30).toFilter(employees);
+    }
+
+    private static Cell[] employee(long id, String name, double salary) throws IOException {
+        byte[] row = toBytes(id);
+        return new Cell[] {
+                new KeyValue(row, toBytes("cf"), toBytes("name"), toBytes(name)),
+                new KeyValue(row, toBytes("cf"), toBytes("sal"), toBytes(salary)),
+                new KeyValue(row, toBytes("ext"), toBytes("dpt"), toBytes("SW"))
+        };
+    }
+
+    // mimics what a region server does for a single row
+    private static boolean passes(Filter filter, Cell... cells) throws IOException {
+        filter.reset();
+        byte[] row = cells[0].getRow();
+        if (filter.filterRowKey(row, 0, row.length)) return false;
+        for (Cell cell : cells) {
+            Filter.ReturnCode code = filter.filterKeyValue(cell);
+            if (code == Filter.ReturnCode.NEXT_ROW) break;
+        }
+        return !filter.filterRow();
+    }
+}
@@ -0,0 +1,88 @@
+package me.jaksa.hbase.lite;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
+import static org.junit.Assert.*;
+
+public class EntityCacheTest {
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void testCachingObjectsAndMisses() throws Exception {
+        EntityCache<String> cache = new EntityCache<>(new CacheOptions().maxEntries(10).cacheMisses(), now::get);
+
+        assertNull(cache.get(toBytes(1)));
+        cache.put(toBytes(1), "one", 10, cache.stamp());
+        cache.put(toBytes(2), null, 0, cache.stamp());
+
+        assertEquals("one", cache.get(toBytes(1)).value);
+        assertNull(cache.get(toBytes(2)).value);
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(2, stats.getEntries());
+    }
+
+    @Test
+    public void testNotCachingValuesLoadedBeforeAnInvalidation() throws Exception {
+        EntityCache<String> cache = new EntityCache<>(new CacheOptions().maxEntries(10), now::get);
+        cache.put(toBytes(1), "one", 10, cache.stamp());
+
+        long stamp = cache.stamp();
+        cache.invalidate(toBytes(1));
+        cache.put(toBytes(1), "old one", 10, stamp);
+
+        assertNull(cache.get(toBytes(1)));
+        // misses are only cached when asked
+        cache.put(toBytes(2), null, 0, cache.stamp());
+        assertNull(cache.get(toBytes(2)));
+    }
+
+    @Test
+    public void testKeepingThePopularKeys() throws Exception {
+        EntityCache<String> cache = new EntityCache<>(new CacheOptions().maxEntries(2), now::get);
+        for (int i = 0; i < 5; i++) {
+            cache.get(toBytes(1));
+            cache.put(toBytes(1), "hot", 10, cache.stamp());
+        }
+
+        for (int cold = 2; cold < 100; cold++) {
+            cache.get(toBytes(cold));
+            cache.put(toBytes(cold), "cold", 10, cache.stamp());
+        }
+
+        assertEquals("hot", cache.get(toBytes(1)).value);
+        assertEquals(2, cache.stats().getEntries());
+        assertTrue(cache.stats().getEvictions() >= 97);
+    }
+
+    @Test
+    public void testLimitingTheBytes() throws Exception {
+        EntityCache<String> cache = new EntityCache<>(new CacheOptions().maxBytes(1000), now::get);
+        for (int i = 0; i < 100; i++) cache.put(toBytes(i), "value", 100, cache.stamp());
+
+        assertTrue(cache.stats().getBytes() <= 1000);
+        assertTrue(cache.stats().getEntries() > 0);
+    }
+
+    @Test
+    public void testExpiringObjects() throws Exception {
+        EntityCache<String> cache = new EntityCache<>(new CacheOptions().maxEntries(10).expireAfterWrite(1, TimeUnit.SECONDS), now::get);
+        cache.put(toBytes(1), "one", 10, cache.stamp());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertNotNull(cache.get(toBytes(1)));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        assertNull(cache.get(toBytes(1)));
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiringALimit() throws Exception {
+        new EntityCache<String>(new CacheOptions());
+    }
+}
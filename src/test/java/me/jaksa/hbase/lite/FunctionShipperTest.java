@@ -0,0 +1,60 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class FunctionShipperTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testShippingFunctionsInTheConfiguration() throws Exception {
+        Job job = newJob();
+        int[] calls = {0};
+        SerializableFunction<Integer, Integer> counter = x -> x + ++calls[0];
+        FunctionShipper.store(job, "mapper", counter);
+
+        SerializableFunction<Integer, Integer> loaded = FunctionShipper.load(job.getConfiguration(), "mapper");
+        assertEquals(4, (int) loaded.apply(3));
+        // the tasks in the same JVM don't share the state of the function
+        SerializableFunction<Integer, Integer> other = FunctionShipper.load(new Configuration(job.getConfiguration()), "mapper");
+        assertNotSame(loaded, other);
+        assertEquals(4, (int) other.apply(3));
+        assertNull(FunctionShipper.load(job.getConfiguration(), "reducer"));
+    }
+
+    @Test
+    public void testShippingLargeFunctionsThroughTheFileSystem() throws Exception {
+        Job job = newJob();
+        job.getConfiguration().setInt(FunctionShipper.INLINE_LIMIT_KEY, 0);
+        FunctionShipper.store(job, "reducer", "a large reducer");
+
+        assertNull(job.getConfiguration().get("hbase-lite.function.reducer"));
+        assertEquals(1, job.getCacheFiles().length);
+        assertEquals("a large reducer", FunctionShipper.load(job.getConfiguration(), "reducer"));
+
+        FunctionShipper.cleanup(job.getConfiguration());
+        File runDir = new File(folder.getRoot(), job.getConfiguration().get(TempStorage.RUN_KEY));
+        assertFalse(runDir.exists());
+        // the bytes are read only once per JVM
+        assertEquals("a large reducer", FunctionShipper.load(job.getConfiguration(), "reducer"));
+    }
+
+    private Job newJob() throws Exception {
+        Configuration conf = new Configuration();
+        conf.set(FunctionShipper.DIR_KEY, folder.getRoot().toURI().toString());
+        conf.set(TempStorage.RUN_KEY, UUID.randomUUID().toString());
+        return Job.getInstance(conf);
+    }
+}
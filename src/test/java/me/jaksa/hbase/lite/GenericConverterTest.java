@@ -1,5 +1,9 @@
 package me.jaksa.hbase.lite;
 
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -8,6 +12,12 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import javax.persistence.Id;
+import javax.persistence.Transient;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static org.apache.hadoop.hbase.util.Bytes.toBytes;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.when;
@@ -53,4 +63,88 @@ public class GenericConverterTest {
         assertEquals(new Double(30000.0), joe.getSalary());
         assertEquals("HR", joe.getDepartment());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConvertingSelectedFields() throws Exception {
+        Result result = Mockito.mock(Result.class);
+        when(result.getRow()).thenReturn(toBytes(01L));
+        when(result.getValue(CF, SALARY)).thenReturn(toBytes(30000.0));
+
+        GenericConverter<Employee> converter = new GenericConverter(Employee.class, Arrays.asList("salary"));
+        Employee joe = converter.convert(result);
+
+        assertEquals(new Long(01L), joe.getId());
+        assertEquals(new Double(30000.0), joe.getSalary());
+        assertNull(joe.getName());
+        assertFalse(converter.toPut(joe).has(CF, NAME));
+    }
+
+    @Test
+    public void testConvertingPrimitiveFields() throws Exception {
+        GenericConverter<Measurement> converter = new GenericConverter(Measurement.class);
+        Measurement measurement = new Measurement();
+        measurement.id = 7;
+        measurement.count = 42;
+        measurement.total = 1234567890123L;
+        measurement.average = 2.5;
+        measurement.valid = true;
+        measurement.unit = 'm';
+
+        Put put = converter.toPut(measurement);
+        assertArrayEquals(toBytes(7), put.getRow());
+        assertTrue(put.has(CF, toBytes("count"), toBytes(42)));
+        assertTrue(put.has(CF, toBytes("total"), toBytes(1234567890123L)));
+        assertFalse(put.has(CF, toBytes("note")));
+        assertFalse(put.has(CF, toBytes("cache")));
+
+        List<Cell> cells = new ArrayList<>(put.getFamilyCellMap().get(CF));
+        cells.sort(KeyValue.COMPARATOR);
+        Measurement converted = converter.convert(Result.create(cells));
+        assertEquals(7, converted.id);
+        assertEquals(42, converted.count);
+        assertEquals(1234567890123L, converted.total);
+        assertEquals(2.5, converted.average, 0.0);
+        assertTrue(converted.valid);
+        assertEquals('m', converted.unit);
+        assertNull(converted.note);
+    }
+
+    @Test
+    public void testClearingTheColumnsOfNullFields() throws Exception {
+        GenericConverter<Employee> converter = new GenericConverter(Employee.class);
+        Employee joe = new Employee(01L, "Joe", 30000.0, null, null);
+
+        Put put = converter.toPut(joe);
+        Delete nulls = converter.nullColumns(joe);
+
+        assertTrue(put.has(CF, NAME));
+        assertFalse(put.has(CF, TITLE));
+        assertArrayEquals(toBytes(01L), nulls.getRow());
+        assertEquals(1, nulls.getFamilyCellMap().get(CF).size());
+        assertTrue(CellUtil.matchingQualifier(nulls.getFamilyCellMap().get(CF).get(0), TITLE));
+        assertTrue(CellUtil.matchingQualifier(nulls.getFamilyCellMap().get(EXT).get(0), DEPARTMENT));
+        assertNull(converter.nullColumns(new Employee(01L, "Joe", 30000.0, "HR", "Junior Recruiter")));
+
+        Measurement measurement = new Measurement();
+        Delete measurementNulls = new GenericConverter<>(Measurement.class).nullColumns(measurement);
+        // the primitive fields are never null
+        assertEquals(1, measurementNulls.getFamilyCellMap().get(CF).size());
+    }
+
+    @Test
+    public void testCachingMetadata() throws Exception {
+        assertSame(EntityMetadata.of(Employee.class), EntityMetadata.of(Employee.class));
+    }
+
+    public static class Measurement {
+        static final int IGNORED = 0;
+        @Id int id;
+        int count;
+        long total;
+        double average;
+        boolean valid;
+        char unit;
+        String note;
+        @Transient String cache;
+    }
+}
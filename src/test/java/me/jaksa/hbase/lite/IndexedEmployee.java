@@ -0,0 +1,38 @@
+package me.jaksa.hbase.lite;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+@Entity
+public class IndexedEmployee implements Serializable {
+    @Id
+    private Long id;
+
+    @Column
+    private String name;
+
+    // the indexed fields can be queried with Table.findBy
+    @Indexed
+    @Column(name = "ext:dpt")
+    private String department;
+
+    public IndexedEmployee() { }
+
+    public IndexedEmployee(Long id, String name, String department) {
+        this.id = id;
+        this.name = name;
+        this.department = department;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDepartment() {
+        return department;
+    }
+}
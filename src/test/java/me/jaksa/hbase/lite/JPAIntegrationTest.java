@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 
 import static java.util.Arrays.asList;
+import static me.jaksa.hbase.lite.Condition.field;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
@@ -20,12 +21,16 @@ import static org.junit.Assert.assertThat;
  */
 public class JPAIntegrationTest {
     private Table<Employee> employees;
+    private Table<IndexedEmployee> indexedEmployees;
 
     @Before
     public void setUp() throws IOException {
         TestUtils.createEmployeeTable();
         employees = new Table(Employee.class);
         employees.deleteAll();
+        TestUtils.createIndexedEmployeeTable();
+        indexedEmployees = new Table(IndexedEmployee.class);
+        indexedEmployees.deleteAll();
     }
 
     @Test
@@ -42,6 +47,140 @@ public class JPAIntegrationTest {
         assertEquals("Junior Recruiter", employees.get(key).getTitle());
     }
 
+    @Test
+    public void testClearingAField() throws Exception {
+        employees.put(new Employee(1l, "Joe", 30000.0, "HR", "Junior Recruiter"));
+        employees.put(new Employee(1l, "Joe", 30000.0, null, "Junior Recruiter"));
+
+        Assert.assertNull(employees.get(1l).getDepartment());
+        assertEquals("Junior Recruiter", employees.get(1l).getTitle());
+    }
+
+    @Test
+    public void testFilteringOnTheRegionServers() throws Exception {
+        employees.put(new Employee(1l, "Joe", 30000.0, "SALES", "Junior Salesman"));
+        employees.put(new Employee(2l, "Jane", -10.0, "SW", "Intern"));
+        employees.put(new Employee(3l, "Jack", 100000.0, "SW", "Senior Manager"));
+
+        Table<Employee> wellPaidDevelopers = employees.where(field("salary").gt(1000).and(field("department").eq("SW")));
+
+        assertThat(wellPaidDevelopers.reduce(es -> Stats.count(es)), is(1L));
+        assertEquals("Jack", wellPaidDevelopers.iterator().next().getName());
+        Assert.assertNull(wellPaidDevelopers.get(1l));
+        assertThat(employees.where(field("salary").lt(0)).reduce(es -> Stats.count(es)), is(1L));
+    }
+
+    @Test
+    public void testReadingOnlySomeColumns() throws Exception {
+        employees.put(new Employee(1l, "Joe", 30000.0, "SALES", "Junior Salesman"));
+        employees.put(new Employee(2l, "Jane", 50000.0, "SW", "Developer"));
+
+        Table<Employee> salaries = employees.project(Employee::getSalary).where(field("department").eq("SW"));
+
+        Employee jane = salaries.get(2l);
+        assertEquals(new Double(50000.0), jane.getSalary());
+        Assert.assertNull(jane.getName());
+        assertEquals(new Double(50000.0), salaries.map(e -> e.getSalary()).reduce(s -> Stats.sum(s)));
+    }
+
+    @Test
+    public void testFindingObjectsByAnIndexedField() throws Exception {
+        indexedEmployees.put(new IndexedEmployee(1l, "Joe", "SALES"));
+        indexedEmployees.putAll(asList(new IndexedEmployee(2l, "Jane", "SW"), new IndexedEmployee(3l, "Jack", "SW")));
+
+        assertThat(indexedEmployees.findBy("department", "SW").size(), is(2));
+        assertEquals("Joe", indexedEmployees.findBy("department", "SALES").get(0).getName());
+
+        // moving an employee leaves a stale index row that is ignored
+        indexedEmployees.put(new IndexedEmployee(2l, "Jane", "SALES"));
+        indexedEmployees.delete(3l);
+        assertThat(indexedEmployees.findBy("department", "SW").size(), is(0));
+        assertThat(indexedEmployees.findBy("department", "SALES").size(), is(2));
+
+        // clearing the field leaves a stale index row too
+        indexedEmployees.put(new IndexedEmployee(1l, "Joe", null));
+        assertThat(indexedEmployees.findBy("department", "SALES").size(), is(1));
+
+        indexedEmployees.rebuildIndex();
+        assertThat(indexedEmployees.findBy("department", "SALES").size(), is(1));
+    }
+
+    @Test
+    public void testIndexingObjectsThatCanBeIteratedOnlyOnce() throws Exception {
+        List<IndexedEmployee> developers = asList(new IndexedEmployee(2l, "Jane", "SW"), new IndexedEmployee(3l, "Jack", "SW"));
+        indexedEmployees.putAll(() -> developers.stream().iterator());
+        assertThat(indexedEmployees.findBy("department", "SW").size(), is(2));
+
+        Iterable<Long> keys = () -> asList(2l, 3l).stream().iterator();
+        indexedEmployees.deleteAll(keys);
+        Assert.assertNull(indexedEmployees.get(2l));
+        assertThat(indexedEmployees.findBy("department", "SW").size(), is(0));
+    }
+
+    @Test
+    public void testIndexingTheAsyncWrites() throws Exception {
+        try (AsyncTable<IndexedEmployee> async = indexedEmployees.async(2)) {
+            async.putAsync(new IndexedEmployee(1l, "Joe", "SALES")).get();
+            assertEquals("Joe", indexedEmployees.findBy("department", "SALES").get(0).getName());
+
+            indexedEmployees.enableCache(new CacheOptions().maxEntries(10));
+            indexedEmployees.get(1l);
+            async.deleteAsync(1l).get();
+            Assert.assertNull(indexedEmployees.get(1l));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindingByAFieldThatIsNotIndexed() throws Exception {
+        indexedEmployees.findBy("name", "Joe");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindingInATableWithoutIndex() throws Exception {
+        employees.findBy("department", "SW");
+    }
+
+    @Test
+    public void testCachingTheObjects() throws Exception {
+        employees.enableCache(new CacheOptions().maxEntries(100).cacheMisses());
+        employees.put(new Employee(1l, "Joe", 30000.0, "SALES", "Junior Salesman"));
+
+        assertEquals("Joe", employees.get(1l).getName());
+        assertEquals("Joe", employees.get(1l).getName());
+        Assert.assertNull(employees.get(2l));
+        Assert.assertNull(employees.get(2l));
+
+        employees.put(new Employee(1l, "Joseph", 30000.0, "SALES", "Junior Salesman"));
+        employees.put(new Employee(2l, "Jane", 50000.0, "SW", "Developer"));
+        assertEquals("Joseph", employees.get(1l).getName());
+        assertEquals("Jane", employees.get(2l).getName());
+
+        CacheStats stats = employees.getCacheStats();
+        assertThat(stats.getHits(), is(2L));
+        assertThat(stats.getMisses(), is(4L));
+        employees.disableCache();
+    }
+
+    @Test
+    public void testComputingStatistics() throws Exception {
+        employees.put(new Employee(1l, "Joe", 30000.0, "SALES", "Junior Salesman"));
+        employees.put(new Employee(2l, "Jane", 50000.0, "SW", "Developer"));
+        employees.put(new Employee(3l, "Jack", 100000.0, "SW", "Senior Manager"));
+
+        DoubleStats salaries = employees.mapToDouble(Employee::getSalary).stats();
+        assertThat(salaries.getCount(), is(3L));
+        assertEquals(180000.0, salaries.getSum(), 0.0);
+        assertEquals(30000.0, salaries.getMin(), 0.0);
+        assertEquals(60000.0, salaries.getMean(), 1E-6);
+
+        assertThat(employees.map(e -> e.getName()).mapToLong(name -> name.length()).sum(), is(11L));
+
+        Map<String, LongStats> byDepartment = employees
+                .partitionBy(e -> e.getDepartment())
+                .aggregate(Stats.summarizingLongs(e -> e.getId()));
+        assertThat(byDepartment.get("SW").getSum(), is(5L));
+    }
+
     @Test
     public void testMapReduce() throws Exception {
         employees.put(new Employee(1l, "Joe", 30000.0, "SALES", "Junior Salesman"));
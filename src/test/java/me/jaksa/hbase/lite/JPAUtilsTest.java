@@ -65,4 +65,14 @@ public class JPAUtilsTest {
         Assert.assertThat(keyField.getName(), is("id"));
         Assert.assertThat(keyField.getType(), equalTo(Long.class));
     }
+
+    @Test
+    public void testGettingFieldNameFromGetter() throws Exception {
+        Assert.assertThat(JPAUtils.getFieldName((SerializableFunction<Employee, Double>) Employee::getSalary), is("salary"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGettingFieldNameFromLambda() throws Exception {
+        JPAUtils.getFieldName((SerializableFunction<Employee, Double>) e -> e.getSalary());
+    }
 }
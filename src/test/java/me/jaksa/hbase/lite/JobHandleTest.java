@@ -0,0 +1,153 @@
+package me.jaksa.hbase.lite;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JobHandleTest {
+    private final JobBuilder jobBuilder = new JobBuilder(null, null, new Configuration(), null, null);
+
+    @Test
+    public void testCompletingInTheBackground() throws Exception {
+        JobHandle<Integer> handle = jobBuilder.submit(() -> 42);
+
+        assertThat(handle.getResult().get(5, TimeUnit.SECONDS), is(42));
+        assertThat(handle.getProgress(), is(1f));
+        assertFalse(handle.cancel());
+    }
+
+    @Test
+    public void testCancellingInterruptsThePipeline() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        JobHandle<Integer> handle = jobBuilder.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return 42;
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertThat(handle.getProgress(), is(0f));
+        assertTrue(handle.cancel());
+
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(handle.getResult().isCancelled());
+    }
+
+    @Test
+    public void testNotSubmittingTheJobsOfACancelledPipeline() throws Exception {
+        Job job = Mockito.mock(Job.class);
+        JobBuilder pipeline = pipelineRunning(job);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        JobHandle<Integer> handle = pipeline.submit(() -> {
+            try {
+                started.countDown();
+                Uninterruptibles.awaitUninterruptibly(proceed);
+                return pipeline.reduceToSingleValue();
+            } finally {
+                finished.countDown();
+            }
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(handle.cancel());
+        proceed.countDown();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(job, never()).waitForCompletion(anyBoolean());
+    }
+
+    @Test
+    public void testKillingAJobSubmittedWhileCancelling() throws Exception {
+        Job job = Mockito.mock(Job.class);
+        AtomicBoolean submitted = new AtomicBoolean();
+        CountDownLatch submitting = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        when(job.isComplete()).thenAnswer(invocation -> {
+            if (!submitted.get()) throw new IllegalStateException("Job in state DEFINE instead of RUNNING");
+            return false;
+        });
+        when(job.waitForCompletion(anyBoolean())).thenAnswer(invocation -> {
+            submitting.countDown();
+            // the submission doesn't notice the interrupt, waiting for the job does
+            Uninterruptibles.awaitUninterruptibly(cancelled);
+            submitted.set(true);
+            Thread.sleep(60000);
+            return true;
+        });
+        JobBuilder pipeline = pipelineRunning(job);
+        CountDownLatch finished = new CountDownLatch(1);
+        JobHandle<Integer> handle = pipeline.submit(() -> {
+            try {
+                return pipeline.reduceToSingleValue();
+            } finally {
+                finished.countDown();
+            }
+        });
+
+        assertTrue(submitting.await(5, TimeUnit.SECONDS));
+        assertTrue(handle.cancel());
+        cancelled.countDown();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        verify(job).killJob();
+    }
+
+    @Test
+    public void testRunningAJobForEveryResult() throws Exception {
+        Job first = Mockito.mock(Job.class);
+        Job second = Mockito.mock(Job.class);
+        when(first.waitForCompletion(anyBoolean())).thenReturn(true);
+        when(second.waitForCompletion(anyBoolean())).thenReturn(true);
+        TempStorage tempStorage = Mockito.mock(TempStorage.class);
+        LongStats stats = new LongStats();
+        stats.add(7);
+        when(tempStorage.retrieveResult(first)).thenReturn(stats);
+        when(tempStorage.retrieveResult(second)).thenReturn(stats);
+        JobBuilder pipeline = pipeline(tempStorage);
+        doReturn(first).doReturn(second).when(pipeline).createJob();
+        LongMapped<Long> numbers = new LongMapped<>(pipeline, x -> x);
+
+        assertThat(numbers.sum(), is(7l));
+        assertThat(numbers.max(), is(7l));
+        verify(first).waitForCompletion(anyBoolean());
+        verify(second).waitForCompletion(anyBoolean());
+    }
+
+    private static JobBuilder pipelineRunning(Job job) throws Exception {
+        JobBuilder pipeline = pipeline(Mockito.mock(TempStorage.class));
+        pipeline.setReducer(values -> 0);
+        doReturn(job).when(pipeline).createJob();
+        return pipeline;
+    }
+
+    private static JobBuilder pipeline(TempStorage tempStorage) {
+        HTable table = Mockito.mock(HTable.class);
+        when(table.getName()).thenReturn(TableName.valueOf("myTable"));
+        return Mockito.spy(new JobBuilder(table, tempStorage, new Configuration(), null, null));
+    }
+}
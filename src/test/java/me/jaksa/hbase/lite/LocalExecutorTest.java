@@ -0,0 +1,174 @@
+package me.jaksa.hbase.lite;
+
+import com.google.common.collect.Iterables;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.RegionLoad;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class LocalExecutorTest {
+    private static final byte[] EMPTY = HConstants.EMPTY_BYTE_ARRAY;
+    private final HTable hTable = Mockito.mock(HTable.class);
+
+    @Before
+    public void setUp() throws Exception {
+        // three regions: [ - c), [c - m), [m - )
+        when(hTable.getStartEndKeys()).thenReturn(new Pair<>(
+                new byte[][] {EMPTY, toBytes("c"), toBytes("m")},
+                new byte[][] {toBytes("c"), toBytes("m"), EMPTY}));
+    }
+
+    @Test
+    public void testScanningAllRegions() throws Exception {
+        List<Scan> scans = new LocalExecutor(hTable, new Scan(), null, null).regionScans();
+
+        assertThat(scans.size(), is(3));
+        assertArrayEquals(EMPTY, scans.get(0).getStartRow());
+        assertArrayEquals(toBytes("c"), scans.get(0).getStopRow());
+        assertArrayEquals(toBytes("m"), scans.get(2).getStartRow());
+        assertArrayEquals(EMPTY, scans.get(2).getStopRow());
+    }
+
+    @Test
+    public void testScanningOnlyTheRegionsInRange() throws Exception {
+        List<Scan> scans = new LocalExecutor(hTable, new Scan(toBytes("d"), toBytes("f")), null, null).regionScans();
+
+        assertThat(scans.size(), is(1));
+        assertArrayEquals(toBytes("d"), scans.get(0).getStartRow());
+        assertArrayEquals(toBytes("f"), scans.get(0).getStopRow());
+    }
+
+    @Test
+    public void testScanningRangesSpanningRegions() throws Exception {
+        List<Scan> scans = new LocalExecutor(hTable, new Scan(toBytes("a"), toBytes("n")), null, null).regionScans();
+
+        assertThat(scans.size(), is(3));
+        assertArrayEquals(toBytes("a"), scans.get(0).getStartRow());
+        assertArrayEquals(toBytes("c"), scans.get(1).getStartRow());
+        assertArrayEquals(toBytes("m"), scans.get(1).getStopRow());
+        assertArrayEquals(toBytes("n"), scans.get(2).getStopRow());
+    }
+
+    @Test
+    public void testEstimatingTheSizeOfTheScannedRegions() throws Exception {
+        TableName table = TableName.valueOf("myTable");
+        List<HRegionInfo> regions = asList(new HRegionInfo(table, EMPTY, toBytes("c")),
+                new HRegionInfo(table, toBytes("c"), toBytes("m")), new HRegionInfo(table, toBytes("m"), EMPTY));
+        Map<byte[], RegionLoad> loads = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        loads.put(regions.get(0).getRegionName(), load(0, 50));
+        loads.put(regions.get(1).getRegionName(), load(10, 0));
+        long maxBytes = 32L * 1024 * 1024;
+
+        // the data in the memstore counts
+        assertFalse(LocalExecutor.isSmall(regions, loads, new Scan(), maxBytes));
+        assertFalse(LocalExecutor.isSmall(regions, loads, new Scan(toBytes("a"), toBytes("b")), maxBytes));
+        // only the regions in the range count
+        assertTrue(LocalExecutor.isSmall(regions, loads, new Scan(toBytes("d"), toBytes("f")), maxBytes));
+        // the size of the last region is unknown
+        assertFalse(LocalExecutor.isSmall(regions, loads, new Scan(toBytes("d"), toBytes("n")), maxBytes));
+    }
+
+    private static RegionLoad load(int storefileMB, int memstoreMB) {
+        RegionLoad load = Mockito.mock(RegionLoad.class);
+        when(load.getStorefileSizeMB()).thenReturn(storefileMB);
+        when(load.getMemStoreSizeMB()).thenReturn(memstoreMB);
+        return load;
+    }
+
+    @Test
+    public void testProcessingTheResultsOfAPreviousStage() throws Exception {
+        List<Integer> input = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) input.add(i);
+        PartitionFunction<Integer, Integer> parity = i -> i % 2;
+        LocalExecutor localExecutor = new LocalExecutor(input, Collections.singletonList(parity));
+
+        Map<Integer, Integer> sizes = localExecutor.reduceToMultipleValues(values -> Iterables.size((Iterable<?>) values));
+        assertThat(sizes.get(0), is(1250));
+        assertThat(sizes.get(1), is(1250));
+
+        Map<Integer, Long> counts = localExecutor.aggregateToMultipleValues(Stats.counting());
+        assertThat(counts.get(1), is(1250L));
+    }
+
+    @Test
+    public void testPuttingTheMappedValuesAChunkAtATime() throws Exception {
+        List<Integer> input = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) input.add(i);
+        SerializableFunction<Integer, Integer> twice = i -> i * 2;
+        Table<Integer> table = Mockito.mock(Table.class);
+        List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> stored = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<Integer> chunk = (List<Integer>) invocation.getArguments()[0];
+            chunkSizes.add(chunk.size());
+            stored.addAll(chunk);
+            return null;
+        }).when(table).putAll(anyListOf(Integer.class));
+
+        new LocalExecutor(input, Collections.singletonList(twice)).putInto(table);
+
+        assertThat(stored.size(), is(2500));
+        assertTrue(stored.contains(4998));
+        for (int size : chunkSizes) assertTrue(size <= 1000);
+    }
+
+    @Test
+    public void testKeepingNullKeysAndValues() throws Exception {
+        List<Integer> input = new ArrayList<>();
+        for (int i = 0; i < 10; i++) input.add(i);
+        PartitionFunction<Integer, Integer> evenOrNull = i -> (i % 2 == 0) ? 0 : null;
+        SerializableFunction<Integer, Integer> oddOrNull = i -> (i % 2 == 0) ? null : i;
+        LocalExecutor localExecutor = new LocalExecutor(input, Arrays.asList(evenOrNull, oddOrNull));
+
+        Map<Integer, Integer> nulls = localExecutor.reduceToMultipleValues(values -> Iterables.size(Iterables.filter((Iterable<?>) values, v -> v == null)));
+        assertThat(nulls.get(0), is(5));
+        assertThat(nulls.get(null), is(0));
+
+        Map<Integer, Long> counts = localExecutor.aggregateToMultipleValues(Stats.counting());
+        assertThat(counts.get(null), is(5L));
+    }
+
+    @Test
+    public void testKeepingNullResults() throws Exception {
+        List<Integer> input = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) input.add(i);
+        PartitionFunction<Integer, Integer> parity = i -> i % 2;
+        LocalExecutor localExecutor = new LocalExecutor(input, Collections.singletonList(parity));
+
+        Map<Integer, Object> reduced = localExecutor.reduceToMultipleValues(values -> null);
+        assertThat(reduced.size(), is(2));
+        assertNull(reduced.get(0));
+
+        Aggregator<Integer, Integer> nothing = Aggregator.of(0, (a, i) -> null, (a, b) -> null);
+        Map<Integer, Integer> aggregated = localExecutor.aggregateToMultipleValues(nothing);
+        assertTrue(aggregated.containsKey(0));
+        assertTrue(aggregated.containsKey(1));
+        assertNull(aggregated.get(1));
+    }
+}
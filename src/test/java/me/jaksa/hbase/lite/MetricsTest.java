@@ -0,0 +1,69 @@
+package me.jaksa.hbase.lite;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @After
+    public void tearDown() {
+        HBaseLite.disableMetrics();
+        HBaseLite.resetMetrics();
+    }
+
+    @Test
+    public void testRecordingNothingWhileDisabled() throws Exception {
+        long start = Metrics.start();
+        Metrics.record("t", Operation.GET, start, 100);
+
+        assertEquals(0, start);
+        assertEquals(0, HBaseLite.getMetrics("t", Operation.GET).getCount());
+    }
+
+    @Test
+    public void testRecordingOperations() throws Exception {
+        List<Operation> seen = new ArrayList<>();
+        MetricsListener listener = (table, operation, nanos, bytes) -> seen.add(operation);
+        HBaseLite.addMetricsListener(listener);
+        HBaseLite.enableMetrics();
+        try {
+            Metrics.record("t", Operation.PUT, Metrics.start(), 100);
+            SerializableUtils.fromBytes(SerializableUtils.toBytes("value"));
+        } finally {
+            HBaseLite.removeMetricsListener(listener);
+        }
+
+        OperationMetrics puts = HBaseLite.getMetrics("t", Operation.PUT);
+        assertEquals(1, puts.getCount());
+        assertEquals(100, puts.getBytes());
+        assertEquals(1, HBaseLite.getMetrics(null, Operation.DESERIALIZE).getCount());
+        assertTrue(seen.contains(Operation.SERIALIZE));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(Metrics.objectName("t", Operation.PUT)));
+    }
+
+    @Test
+    public void testComputingPercentiles() throws Exception {
+        OperationMetrics metrics = new OperationMetrics();
+        for (int i = 1; i <= 100; i++) metrics.record(i * 1000000L, 0);
+
+        assertEquals(50, metrics.get50thPercentileMillis(), 50 * 0.25);
+        assertEquals(99, metrics.get99thPercentileMillis(), 99 * 0.25);
+        assertEquals(100, metrics.getMaxMillis(), 0);
+        assertEquals(50.5, metrics.getMeanMillis(), 0.01);
+    }
+
+    @Test
+    public void testBucketBoundaries() throws Exception {
+        for (long nanos : new long[] {0, 3, 4, 7, 8, 1000, 123456789, Long.MAX_VALUE / 2}) {
+            int bucket = OperationMetrics.bucket(nanos);
+            assertTrue(nanos <= OperationMetrics.upperBound(bucket));
+            assertTrue(bucket == 0 || nanos > OperationMetrics.upperBound(bucket - 1));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapreduce.Job;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PartitionOptionsTest {
+
+    @Test
+    public void testSaltingOnlyTheHotKeys() throws Exception {
+        HotKeys hotKeys = new HotKeys(4, 10, 0.5f);
+        for (int i = 0; i < 10; i++) hotKeys.salt(i < 8 ? "giant" : "small" + i);
+
+        assertThat(hotKeys.salt("small8"), is((Object) "small8"));
+        Set<Object> salted = new HashSet<>();
+        for (int i = 0; i < 8; i++) salted.add(hotKeys.salt("giant"));
+        assertThat(salted.size(), is(4));
+        assertThat(salted.iterator().next(), instanceOf(SaltedKey.class));
+    }
+
+    @Test
+    public void testConfiguringTheShuffle() throws Exception {
+        Job job = Job.getInstance(new Configuration());
+        KeyPartitioner<String> byLength = (key, reducers) -> key.length();
+        new PartitionOptions().reducers(8).partitioner(byLength).saltHotKeys(3).applyTo(job, true);
+
+        assertThat(job.getNumReduceTasks(), is(8));
+        assertThat(HotKeys.of(job.getConfiguration()) != null, is(true));
+
+        ShufflePartitioner partitioner = new ShufflePartitioner();
+        partitioner.setConf(job.getConfiguration());
+        ShuffleCodec codec = TempStorage.retrieveCodec(job.getConfiguration());
+        assertThat(partitioner.getPartition(new BytesWritable(codec.encode("abc")), null, 8), is(3));
+        assertThat(partitioner.getPartition(new BytesWritable(codec.encode(new SaltedKey("abc", 2))), null, 8), is(5));
+        assertThat(partitioner.getPartition(new BytesWritable(codec.encode(new SaltedKey("abcdefg", 2))), null, 8), is(1));
+    }
+}
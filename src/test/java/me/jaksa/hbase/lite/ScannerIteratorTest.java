@@ -0,0 +1,87 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ScannerIteratorTest {
+    private final ResultScanner scanner = Mockito.mock(ResultScanner.class);
+    private final Function<Result, Integer> cellCounter = Result::size;
+
+    @Test
+    public void testConvertingRowsAndClosingTheScanner() throws Exception {
+        when(scanner.next()).thenReturn(row("a", "c1"), row("b", "c1", "c2"), null);
+
+        ScannerIterator<Integer> iterator = new ScannerIterator<>(scanner, cellCounter, false);
+
+        assertThat(toList(iterator).toString(), is("[1, 2]"));
+        assertFalse(iterator.hasNext());
+        verify(scanner, times(1)).close();
+    }
+
+    @Test
+    public void testMergingBatchedRows() throws Exception {
+        when(scanner.next()).thenReturn(row("a", "c1", "c2"), row("a", "c3"), row("b", "c1"), row("c", "c1"), row("c", "c2"), null);
+
+        ScannerIterator<Integer> iterator = new ScannerIterator<>(scanner, cellCounter, true);
+
+        assertThat(toList(iterator).toString(), is("[3, 1, 2]"));
+    }
+
+    @Test
+    public void testClosingBeforeTheEnd() throws Exception {
+        when(scanner.next()).thenReturn(row("a", "c1"), row("b", "c1"), null);
+
+        ScannerIterator<Integer> iterator = new ScannerIterator<>(scanner, cellCounter, false);
+        iterator.next();
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        verify(scanner, times(1)).close();
+    }
+
+    @Test
+    public void testKeepingNullElements() throws Exception {
+        when(scanner.next()).thenReturn(row("a", "c1"), row("b", "c1"), null);
+        AtomicInteger conversions = new AtomicInteger();
+
+        ScannerIterator<Integer> iterator = new ScannerIterator<>(scanner, row -> {
+            conversions.incrementAndGet();
+            return null;
+        }, false);
+
+        assertTrue(iterator.hasNext());
+        assertTrue(iterator.hasNext());
+        assertThat(iterator.stream().count(), is(2l));
+        assertThat(conversions.get(), is(2));
+    }
+
+    private static Result row(String row, String... qualifiers) {
+        List<Cell> cells = new ArrayList<>();
+        for (String qualifier : qualifiers) cells.add(new KeyValue(toBytes(row), toBytes("cf"), toBytes(qualifier), toBytes(1)));
+        return Result.create(cells);
+    }
+
+    private static <T> List<T> toList(ScannerIterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        while (iterator.hasNext()) list.add(iterator.next());
+        return list;
+    }
+}
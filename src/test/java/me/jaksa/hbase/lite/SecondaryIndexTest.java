@@ -0,0 +1,60 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.when;
+
+public class SecondaryIndexTest {
+    private final SecondaryIndex<IndexedEmployee> index = SecondaryIndex.of("employees", new GenericConverter<>(IndexedEmployee.class));
+
+    @Test
+    public void testIndexingTheAnnotatedFields() throws Exception {
+        assertEquals("employees-idx", index.getTableName());
+        assertEquals(1, index.getProperties().size());
+        assertNull(SecondaryIndex.of("employees", Mockito.mock(Converter.class)));
+        assertNull(SecondaryIndex.of("employees", new GenericConverter<>(Employee.class)));
+
+        List<Put> puts = index.puts(new IndexedEmployee(1L, "Joe", "HR"));
+        assertEquals(1, puts.size());
+        EntityMetadata.Property department = index.getProperty("department");
+        assertArrayEquals(SecondaryIndex.row(department, toBytes("HR"), toBytes(1L)), puts.get(0).getRow());
+
+        assertTrue(index.puts(new IndexedEmployee(1L, "Joe", null)).isEmpty());
+    }
+
+    @Test
+    public void testValuesThatArePrefixesOfOtherValuesHaveDistinctRows() throws Exception {
+        EntityMetadata.Property department = index.getProperty("department");
+        byte[] hr = SecondaryIndex.prefix(department, toBytes("HR"));
+        byte[] hrOps = SecondaryIndex.row(department, toBytes("HR-OPS"), toBytes(1L));
+
+        assertFalse(Bytes.startsWith(hrOps, hr));
+        assertTrue(Bytes.startsWith(SecondaryIndex.row(department, toBytes("HR"), toBytes("HR-OPS")), hr));
+    }
+
+    @Test
+    public void testDeletingTheRowsOfAResult() throws Exception {
+        Result result = Mockito.mock(Result.class);
+        when(result.getRow()).thenReturn(toBytes(1L));
+        when(result.getValue(toBytes("ext"), toBytes("dpt"))).thenReturn(toBytes("HR"));
+
+        List<Delete> deletes = index.deletes(result);
+
+        assertEquals(1, deletes.size());
+        assertArrayEquals(index.puts(result).get(0).getRow(), deletes.get(0).getRow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldsThatAreNotIndexed() throws Exception {
+        index.getProperty("name");
+    }
+}
@@ -2,6 +2,8 @@ package me.jaksa.hbase.lite;
 
 import org.junit.Test;
 
+import java.io.Serializable;
+
 import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.closeTo;
@@ -25,4 +27,63 @@ public class StatsTest {
     public void testCount() throws Exception {
         assertThat(Stats.count(DOUBLES), is(6l));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAggregators() throws Exception {
+        assertThat(aggregateInTwoParts(Stats.summingInts(), INTS), is(21l));
+        assertThat(aggregateInTwoParts(Stats.summingLongs(), LONGS), is(21l));
+        assertThat(aggregateInTwoParts(Stats.summingFloats(), FLOATS), is(closeTo(21.6, 1E-5)));
+        assertThat(aggregateInTwoParts(Stats.summing(), DOUBLES), is(closeTo(21.6, 1E-10)));
+        assertThat(aggregateInTwoParts(Stats.counting(), DOUBLES), is(6l));
+    }
+
+    @Test
+    public void testAggregatingNothing() throws Exception {
+        assertThat(Stats.counting().zero(), is(0l));
+        assertThat(Stats.summing().zero(), is(0.0));
+    }
+
+    // simulates two mappers each producing a partial result
+    private static <T, A extends Serializable> A aggregateInTwoParts(Aggregator<T, A> aggregator, Iterable<? extends T> values) {
+        A first = aggregator.zero();
+        A second = aggregator.zero();
+        int i = 0;
+        for (T value : values) {
+            if (i++ % 2 == 0) first = aggregator.accumulate(first, value);
+            else second = aggregator.accumulate(second, value);
+        }
+        return aggregator.merge(first, second);
+    }
+
+    @Test
+    public void testSummarizingLongsInParts() throws Exception {
+        Aggregator<Long, LongStats> aggregator = Stats.summarizingLongs(n -> n);
+        LongStats first = aggregator.zero();
+        LongStats second = aggregator.zero();
+        for (long n : new long[] {1, 2, 3}) first = aggregator.accumulate(first, n);
+        for (long n : new long[] {4, 5, 6}) second = aggregator.accumulate(second, n);
+
+        LongStats stats = aggregator.merge(first, second);
+
+        assertThat(stats.getCount(), is(6l));
+        assertThat(stats.getSum(), is(21l));
+        assertThat(stats.getMin(), is(1l));
+        assertThat(stats.getMax(), is(6l));
+        assertThat(stats.getMean(), is(closeTo(3.5, 1E-10)));
+        assertThat(stats.getVariance(), is(closeTo(35.0 / 12, 1E-10)));
+    }
+
+    @Test
+    public void testSummarizingDoubles() throws Exception {
+        Aggregator<Double, DoubleStats> aggregator = Stats.summarizingDoubles(n -> n);
+        DoubleStats stats = aggregator.zero();
+        for (Double n : DOUBLES) stats = aggregator.accumulate(stats, n);
+        stats = aggregator.merge(stats, aggregator.zero());
+
+        assertThat(stats.getSum(), is(closeTo(21.6, 1E-10)));
+        assertThat(stats.getMin(), is(1.1));
+        assertThat(stats.getMax(), is(6.1));
+        assertThat(stats.getVariance(), is(closeTo(35.0 / 12, 1E-10)));
+        assertThat(Double.isNaN(aggregator.zero().getMean()), is(true));
+    }
+}
@@ -2,6 +2,10 @@ package me.jaksa.hbase.lite;
 
 import com.google.common.collect.Lists;
 import me.jaksa.hbase.lite.TestUtils.Dummy;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -9,11 +13,15 @@ import org.junit.Test;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.google.common.collect.Iterables.size;
 import static java.util.Arrays.asList;
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -40,6 +48,79 @@ public class TableIntegrationTest {
         Assert.assertEquals("one", testTable.get(KEY).value);
     }
 
+    @Test
+    public void testStoringAndDeletingInBatches() throws Exception {
+        testTable.putAll(asList(new Dummy("jack", "two"), new Dummy("jill", "three"), new Dummy("june", "four")));
+
+        assertEquals("three", testTable.get("jill").value);
+
+        testTable.deleteAll(asList("jack", "jill"));
+
+        Assert.assertNull(testTable.get("jack"));
+        Assert.assertNull(testTable.get("jill"));
+        assertEquals("four", testTable.get("june").value);
+    }
+
+    @Test
+    public void testGettingSeveralObjects() throws Exception {
+        testTable.putAll(asList(new Dummy("jack", "two"), new Dummy("jill", "three"), new Dummy("june", "four")));
+
+        Map<String, Dummy> result = testTable.getAll(asList("june", "joe", "jack"));
+
+        assertThat(result.keySet(), contains("june", "jack"));
+        assertEquals("two", result.get("jack").value);
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        testTable.putAll(asList(new Dummy("jack", "two"), new Dummy("jill", "three"), new Dummy("june", "four")));
+
+        Table<Dummy> tuned = testTable.withScanOptions(new ScanOptions().caching(2).batch(1).cacheBlocks(false));
+        try (Stream<Dummy> stream = tuned.stream()) {
+            assertThat(stream.map(d -> d.name).collect(Collectors.toList()), contains("jack", "jill", "june"));
+        }
+
+        try (CloseableIterator<Dummy> iterator = testTable.iterator()) {
+            assertEquals("two", iterator.next().value);
+        }
+    }
+
+    @Test
+    public void testProcessingRangesOfKeys() throws Exception {
+        testTable.putAll(asList(new Dummy("jack", "1"), new Dummy("jill", "2"), new Dummy("june", "3"), new Dummy("tom", "4")));
+
+        assertThat(testTable.prefix("j").reduce(values -> size(values)), is(3));
+        assertThat(testTable.range("jill", "tom").reduce(values -> size(values)), is(2));
+        assertThat(testTable.range("jill", null).prefix("j").map(d -> d.name).reduce(names -> Lists.newArrayList(names)),
+                contains("jill", "june"));
+    }
+
+    @Test
+    public void testWriteBehind() throws Exception {
+        testTable.enableWriteBehind(0, 0);
+        testTable.put(new Dummy("jack", "two"));
+
+        Assert.assertNull(testTable.get("jack"));
+
+        testTable.flush();
+
+        assertEquals("two", testTable.get("jack").value);
+        testTable.close();
+    }
+
+    @Test
+    public void testDeletingTheBufferedWrites() throws Exception {
+        testTable.enableWriteBehind(0, 0);
+        testTable.put(new Dummy("jack", "two"));
+        testTable.deleteAll();
+        testTable.put(new Dummy("jill", "three"));
+        testTable.deleteAll(asList("jill"));
+        testTable.close();
+
+        Assert.assertNull(testTable.get("jack"));
+        Assert.assertNull(testTable.get("jill"));
+    }
+
     @Test
     public void testReducing() throws Exception {
         testTable.put(new Dummy("jack", "two"));
@@ -78,6 +159,149 @@ public class TableIntegrationTest {
         assertThat(result.get('f'), is(1)); // four
     }
 
+    @Test
+    public void testStreamingPartitionResults() throws Exception {
+        List<Dummy> dummies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) dummies.add(new Dummy("dummy" + i, Integer.toString(i % 10)));
+        testTable.putAll(dummies);
+
+        try (Stream<Map.Entry<String, Integer>> results = testTable
+                .partitionBy(d -> d.value)
+                .reduceToStream(values -> size(values))) {
+            Map<String, Integer> sizes = results.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            assertThat(sizes.size(), is(10));
+            assertThat(sizes.get("7"), is(10));
+        }
+
+        try (Stream<Map.Entry<String, Long>> results = testTable
+                .partitionBy(d -> d.value)
+                .aggregateToStream(Stats.counting())) {
+            assertThat(results.count(), is(10L));
+        }
+    }
+
+    @Test
+    public void testRunningPipelinesConcurrently() throws Exception {
+        testTable.putAll(asList(new Dummy("jack", "2"), new Dummy("jill", "3"), new Dummy("june", "3")));
+
+        JobHandle<Long> count = testTable.aggregateAsync(Stats.counting());
+        JobHandle<Map<String, Integer>> sizes = testTable.partitionBy(d -> d.value).reduceAsync(values -> size(values));
+
+        assertThat(count.getResult().get(), is(3L));
+        assertThat(sizes.getResult().get().get("3"), is(2));
+        assertThat(sizes.getProgress(), is(1f));
+    }
+
+    @Test
+    public void testSaltingHotPartitions() throws Exception {
+        List<Dummy> dummies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) dummies.add(new Dummy("dummy" + i, i < 90 ? "hot" : "cold"));
+        testTable.putAll(dummies);
+
+        PartitionOptions options = new PartitionOptions().reducers(4).saltHotKeys(4).sampling(10, 0.5f);
+        Map<String, Long> counts = testTable.partitionBy(d -> d.value, options).aggregate(Stats.counting());
+
+        assertThat(counts.get("hot"), is(90L));
+        assertThat(counts.get("cold"), is(10L));
+    }
+
+    @Test
+    public void testReducingIntoATable() throws Exception {
+        List<Dummy> dummies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) dummies.add(new Dummy("dummy" + i, Integer.toString(i % 10)));
+        testTable.putAll(dummies);
+
+        testTable.prefix("dummy")
+                .partitionBy(d -> d.value)
+                .reduceInto(testTable, values -> new Dummy("count" + values.iterator().next().value, Integer.toString(size(values))));
+
+        assertEquals("10", testTable.get("count7").value);
+        try (Stream<Dummy> counts = testTable.prefix("count").stream()) {
+            assertThat(counts.count(), is(10L));
+        }
+    }
+
+    @Test
+    public void testDeletingInBatches() throws Exception {
+        List<Dummy> dummies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) dummies.add(new Dummy((i < 50 ? "dummy" : "other") + i, Integer.toString(i)));
+        testTable.putAll(dummies);
+
+        HBaseLite.getConfiguration().setInt(RowDeleter.BATCH_SIZE_KEY, 7);
+        try {
+            testTable.prefix("dummy").deleteAll();
+        } finally {
+            HBaseLite.getConfiguration().unset(RowDeleter.BATCH_SIZE_KEY);
+        }
+
+        assertNull(testTable.get("dummy1"));
+        try (Stream<Dummy> others = testTable.stream()) {
+            assertThat(others.count(), is(50L));
+        }
+
+        testTable.truncate();
+        assertNull(testTable.get("other51"));
+    }
+
+    @Test
+    public void testDeletingAProjectionOfASharedTable() throws Exception {
+        testTable.putAll(asList(new Dummy("jack", "two"), new Dummy("jill", "three")));
+        // a row of another entity stored in the same table
+        Put other = new Put(toBytes("other"));
+        other.addColumn(toBytes("cf"), toBytes("value"), toBytes("kept"));
+        testTable.getHTable().put(other);
+
+        // large enough to be deleted with a job
+        HBaseLite.getConfiguration().setLong(RowDeleter.JOB_THRESHOLD_KEY, -1);
+        try {
+            testTable.select("cf:val").deleteAll();
+        } finally {
+            HBaseLite.getConfiguration().unset(RowDeleter.JOB_THRESHOLD_KEY);
+        }
+
+        assertNull(testTable.get("jack"));
+        assertNull(testTable.get("jill"));
+        Result kept = testTable.getHTable().get(new Get(toBytes("other")));
+        assertEquals("kept", Bytes.toString(kept.getValue(toBytes("cf"), toBytes("value"))));
+    }
+
+    @Test
+    public void testBulkLoadingATable() throws Exception {
+        List<Dummy> dummies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) dummies.add(new Dummy("dummy" + i, Integer.toString(i)));
+        testTable.putAll(dummies);
+
+        testTable.bulkLoad(testTable.prefix("dummy").map(d -> new Dummy("copy" + d.value, d.value)));
+
+        assertEquals("42", testTable.get("copy42").value);
+        try (Stream<Dummy> copies = testTable.prefix("copy").stream()) {
+            assertThat(copies.count(), is(100L));
+        }
+    }
+
+    @Test
+    public void testReducingInSeveralStages() throws Exception {
+        List<Dummy> dummies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) dummies.add(new Dummy("dummy" + i, Integer.toString(i % 10)));
+        testTable.putAll(dummies);
+
+        // the sizes of the partitions by value, then the number of partitions of each size
+        Map<Integer, Integer> partitionsBySize = testTable
+                .partitionBy(d -> d.value)
+                .reduceToDataset(values -> size(values))
+                .partitionBy(e -> e.getValue())
+                .reduce(entries -> size(entries));
+
+        assertThat(partitionsBySize.size(), is(1));
+        assertThat(partitionsBySize.get(10), is(10));
+
+        long partitions = testTable
+                .partitionBy(d -> d.value)
+                .aggregateToDataset(Stats.counting())
+                .aggregate(Stats.counting());
+        assertThat(partitions, is(10L));
+    }
+
     @Test
     public void testChainedMapSteps() throws Exception {
         testTable.put(new Dummy("jack", "2"));
@@ -114,6 +338,64 @@ public class TableIntegrationTest {
         assertThat(result.get(asList('t', 3)), equalTo(32L));
     }
 
+    @Test
+    public void testAggregating() throws Exception {
+        testTable.put(new Dummy("jack", "2"));
+        testTable.put(new Dummy("jill", "3"));
+        testTable.put(new Dummy("june", "4"));
+
+        assertThat(testTable.aggregate(Stats.counting()), is(3L));
+        assertThat(testTable
+                .map(d -> Integer.parseInt(d.value))
+                .aggregate(Stats.summingInts()), is(9L));
+    }
+
+    @Test
+    public void testPartitionedAggregating() throws Exception {
+        testTable.put(new Dummy("joe",  "15"));
+        testTable.put(new Dummy("jack", "10"));
+        testTable.put(new Dummy("tom",  "32"));
+
+        Map<Character, Integer> result = testTable
+                .partitionBy(d -> d.name.charAt(0))
+                .map(d -> Integer.parseInt(d.value))
+                .aggregate(0, (sum, n) -> sum + n, (a, b) -> a + b);
+
+        assertThat(result.size(), is(2));
+        assertThat(result.get('j'), is(25));
+        assertThat(result.get('t'), is(32));
+    }
+
+    @Test
+    public void testAggregatingEmptyTable() throws Exception {
+        assertThat(testTable.aggregate(Stats.counting()), is(0L));
+    }
+
+    @Test
+    public void testProcessingLocally() throws Exception {
+        testTable.put(new Dummy("joe",  "15"));
+        testTable.put(new Dummy("jack", "10"));
+        testTable.put(new Dummy("tom",  "32"));
+
+        Table<Dummy> local = testTable.using(ExecutionMode.LOCAL);
+
+        assertThat(local.reduce(values -> size(values)), is(3));
+        assertThat(local.aggregate(Stats.counting()), is(3L));
+
+        Map<Character, Long> result = local
+                .partitionBy(d -> d.name.charAt(0))
+                .map(d -> Integer.parseInt(d.value))
+                .reduce(values -> Stats.sumInts(values));
+        assertThat(result.size(), is(2));
+        assertThat(result.get('j'), is(25L));
+        assertThat(result.get('t'), is(32L));
+    }
+
+    @Test
+    public void testReducingEmptyTableLocally() throws Exception {
+        assertThat(testTable.using(ExecutionMode.LOCAL).reduce(values -> size(values)), is(0));
+    }
+
     @Test
     public void testReducingEmptyTable() throws Exception {
         assertThat(testTable.reduce(values -> size(values)), is(0));
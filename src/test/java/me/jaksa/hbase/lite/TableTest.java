@@ -1,8 +1,16 @@
 package me.jaksa.hbase.lite;
 
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.HRegionLocation;
+import org.apache.hadoop.hbase.ServerName;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.RowMutations;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -15,13 +23,19 @@ import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static me.jaksa.hbase.lite.TestUtils.*;
@@ -76,6 +90,20 @@ public class TableTest {
         assertEquals(DUMMY_JOE, joe);
     }
 
+    @Test
+    public void testGettingSeveralObjects() throws Exception {
+        HRegionLocation region = new HRegionLocation(new HRegionInfo(TableName.valueOf("myTable")), ServerName.valueOf("rs1", 16020, 0));
+        when(hTable.getRegionLocation((byte[]) any())).thenReturn(region);
+        when(hTable.get(anyListOf(Get.class))).thenReturn(new Result[] {DUMMY_RESULT, Result.EMPTY_RESULT});
+        when(converter.convert(DUMMY_RESULT)).thenReturn(DUMMY_JOE);
+        Table<TestUtils.Dummy> table = new Table(hTable, "fam1:col1,fam1:col2,fam2:col1", converter);
+
+        Map<String, TestUtils.Dummy> dummies = table.getAll(asList("joe", "jack"));
+
+        assertThat(dummies.size(), is(1));
+        assertEquals(DUMMY_JOE, dummies.get("joe"));
+    }
+
     @Test
     public void testStoringAnObject() throws Exception {
         when(converter.toPut(eq(DUMMY_JOE))).thenReturn(DUMMY_PUT);
@@ -86,6 +114,80 @@ public class TableTest {
         verify(hTable).put(eq(DUMMY_PUT));
     }
 
+    @Test
+    public void testStoringAFullyPopulatedObjectWithAPlainPut() throws Exception {
+        Table<Employee> table = new Table(hTable, "cf:name,cf:title,cf:sal,ext:dpt", new GenericConverter<>(Employee.class));
+
+        table.put(new Employee(1l, "Joe", 30000.0, "HR", "Junior Recruiter"));
+
+        verify(hTable).put(any(Put.class));
+        verify(hTable, never()).mutateRow(any(RowMutations.class));
+    }
+
+    @Test
+    public void testClearingTheNullFieldsTogetherWithThePut() throws Exception {
+        Table<Employee> table = new Table(hTable, "cf:name,cf:title,cf:sal,ext:dpt", new GenericConverter<>(Employee.class));
+
+        table.put(new Employee(1l, "Joe", 30000.0, null, "Junior Recruiter"));
+
+        verify(hTable, never()).put(any(Put.class));
+        verify(hTable).mutateRow(any(RowMutations.class));
+    }
+
+
+    @Test
+    public void testGettingSelectedColumns() throws Exception {
+        Table<TestUtils.Dummy> table = new Table(hTable, "fam1:col1,fam1:col2,fam2:col1", converter);
+
+        table.select("fam1:col2").get("joe");
+
+        verify(hTable).get(argThat(new TypeSafeMatcher<Get>() {
+            @Override
+            protected boolean matchesSafely(Get get) {
+                NavigableSet<byte[]> columns = get.getFamilyMap().get(Bytes.toBytes("fam1"));
+                return get.numFamilies() == 1 && columns.size() == 1 && columns.contains(Bytes.toBytes("col2"));
+            }
+
+            @Override
+            public void describeTo(Description description) {
+                description.appendText("a get for fam1:col2");
+            }
+        }));
+    }
+
+
+    @Test
+    public void testComputingTheEndOfAPrefix() throws Exception {
+        assertArrayEquals(Bytes.toBytes("tenant2"), Table.prefixStop(Bytes.toBytes("tenant1")));
+        assertArrayEquals(new byte[] {1, 3}, Table.prefixStop(new byte[] {1, 2, (byte) 0xFF}));
+        assertArrayEquals(new byte[0], Table.prefixStop(new byte[] {(byte) 0xFF, (byte) 0xFF}));
+    }
+
+    @Test
+    public void testIntersectingRanges() throws Exception {
+        Table<TestUtils.Dummy> table = new Table(hTable, "fam1:col1", converter);
+        when(hTable.getScanner((Scan) any())).thenReturn(Mockito.mock(ResultScanner.class));
+
+        table.range("a", "m").prefix("c").range(null, "cz").iterator();
+
+        verify(hTable).getScanner(argThat(new TypeSafeMatcher<Scan>() {
+            @Override
+            protected boolean matchesSafely(Scan scan) {
+                return Bytes.equals(scan.getStartRow(), Bytes.toBytes("c")) && Bytes.equals(scan.getStopRow(), Bytes.toBytes("cz"));
+            }
+
+            @Override
+            public void describeTo(Description description) {
+                description.appendText("a scan from c to cz");
+            }
+        }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyRanges() throws Exception {
+        new Table(hTable, "fam1:col1", converter).range("a", "m").prefix("x");
+    }
+
 
     // TODO test creating a non existant table
 
@@ -0,0 +1,35 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TempStorageTest {
+
+    @Test
+    public void testRunsAreSpreadOverTheSaltBuckets() throws Exception {
+        Set<Byte> buckets = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            byte salt = TempStorage.runPrefix(UUID.randomUUID().toString())[0];
+            assertTrue(salt >= 0 && salt < TempStorage.SALT_BUCKETS);
+            buckets.add(salt);
+        }
+        assertEquals(TempStorage.SALT_BUCKETS, buckets.size());
+    }
+
+    @Test
+    public void testRunsDoNotShareRows() throws Exception {
+        String run = UUID.randomUUID().toString();
+        byte[] prefix = TempStorage.runPrefix(run);
+
+        assertEquals(Bytes.toStringBinary(prefix), Bytes.toStringBinary(TempStorage.runPrefix(run)));
+        assertFalse(Bytes.startsWith(TempStorage.runPrefix(run + "0"), prefix));
+    }
+}
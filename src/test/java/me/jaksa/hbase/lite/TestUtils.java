@@ -32,9 +32,17 @@ public class TestUtils {
     }
 
     public static void createEmployeeTable() throws IOException {
+        createEmployeeTable("Employees");
+    }
+
+    public static void createIndexedEmployeeTable() throws IOException {
+        createEmployeeTable("IndexedEmployees");
+    }
+
+    private static void createEmployeeTable(String name) throws IOException {
         HBaseAdmin hbase = new HBaseAdmin(HBaseLite.getConfiguration());
-        if (!hbase.tableExists("Employees")) {
-            HTableDescriptor desc = new HTableDescriptor(TableName.valueOf("Employees"));
+        if (!hbase.tableExists(name)) {
+            HTableDescriptor desc = new HTableDescriptor(TableName.valueOf(name));
             desc.addFamily(new HColumnDescriptor(Bytes.toBytes("cf")));
             desc.addFamily(new HColumnDescriptor(Bytes.toBytes("ext")));
             hbase.createTable(desc);
@@ -0,0 +1,67 @@
+package me.jaksa.hbase.lite;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.BufferedMutator;
+import org.apache.hadoop.hbase.client.BufferedMutatorParams;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.RetriesExhaustedWithDetailsException;
+import org.apache.hadoop.hbase.client.Row;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.apache.hadoop.hbase.util.Bytes.toBytes;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WriteBufferTest {
+    private final Connection connection = Mockito.mock(Connection.class);
+    private final BufferedMutator mutator = Mockito.mock(BufferedMutator.class);
+    private WriteBuffer writeBuffer;
+
+    @Before
+    public void setUp() throws IOException {
+        when(connection.getBufferedMutator((BufferedMutatorParams) any())).thenReturn(mutator);
+        writeBuffer = new WriteBuffer(connection, TableName.valueOf("myTable"), 0, 0);
+    }
+
+    @Test
+    public void testFlushingSendsTheBufferedMutations() throws Exception {
+        writeBuffer.mutate(new Put(toBytes("joe")));
+        writeBuffer.flush();
+
+        verify(mutator).flush();
+    }
+
+    @Test
+    public void testFailuresAreReportedOnFlush() throws Exception {
+        Put failed = new Put(toBytes("joe"));
+        writeBuffer.onException(new RetriesExhaustedWithDetailsException(
+                Collections.singletonList(new IOException("region server down")),
+                Collections.<Row>singletonList(failed),
+                Collections.singletonList("rs1:16020")), mutator);
+
+        try {
+            writeBuffer.flush();
+            fail("the failure should have been reported");
+        } catch (RetriesExhaustedWithDetailsException e) {
+            assertEquals(1, e.getNumExceptions());
+            assertSame(failed, e.getRow(0));
+        }
+
+        writeBuffer.flush(); // failures are reported only once
+    }
+
+    @Test
+    public void testClosingClosesTheMutator() throws Exception {
+        writeBuffer.close();
+
+        verify(mutator).close();
+    }
+}